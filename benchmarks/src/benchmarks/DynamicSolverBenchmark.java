@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the dynamic programming solver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DynamicSolverBenchmark {
+
+    @Param({"500", "2000", "8000"})
+    public int n;
+
+    @Param({"RANDOM", "DEPENDENT"})
+    public String mode;
+
+    private Object costTable;
+
+    @Setup
+    public void setUp() throws Throwable {
+        costTable = (Object) Tcss343.GENERATE.invokeExact(n, Tcss343.generationMode(mode));
+    }
+
+    @Benchmark
+    public Object dynamic() throws Throwable {
+        return (Object) Tcss343.DYNAMIC.invokeExact(costTable);
+    }
+}
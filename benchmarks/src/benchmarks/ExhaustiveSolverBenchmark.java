@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the exponential brute force and divide and conquer solvers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExhaustiveSolverBenchmark {
+
+    @Param({"12", "16", "20"})
+    public int n;
+
+    @Param({"RANDOM", "DEPENDENT"})
+    public String mode;
+
+    private Object costTable;
+
+    @Setup
+    public void setUp() throws Throwable {
+        costTable = (Object) Tcss343.GENERATE.invokeExact(n, Tcss343.generationMode(mode));
+    }
+
+    @Benchmark
+    public Object bruteForce() throws Throwable {
+        return (Object) Tcss343.BRUTE_FORCE.invokeExact(costTable);
+    }
+
+    @Benchmark
+    public Object divideConquer() throws Throwable {
+        return (Object) Tcss343.DIVIDE_CONQUER.invokeExact(costTable);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for reading and writing cost table files. Tables are written to the working
+ * directory under the same names the program uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+
+    @Param({"200", "1000", "4000"})
+    public int n;
+
+    @Param({"RANDOM", "DEPENDENT"})
+    public String mode;
+
+    private Object generationMode;
+    private String target;
+
+    @Setup
+    public void setUp() throws Throwable {
+        generationMode = Tcss343.generationMode(mode);
+        // Only the file the benchmarks read is needed. invokeExact would need the returned table
+        // assigned to an Object to match its signature, invoke lets the call drop it.
+        Tcss343.GENERATE_AND_SAVE.invoke(n, generationMode);
+        target = String.format("./%sCostTable%s.txt", mode, n);
+    }
+
+    @Benchmark
+    public Object readCostTableFromFile() throws Throwable {
+        return (Object) Tcss343.READ.invokeExact(target);
+    }
+
+    @Benchmark
+    public Object generateAndSaveCostTable() throws Throwable {
+        return (Object) Tcss343.GENERATE_AND_SAVE.invokeExact(n, generationMode);
+    }
+}
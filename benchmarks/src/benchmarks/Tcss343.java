@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Handles to the methods of tcss343 that are benchmarked.
+ *
+ * tcss343 lives in the default package, which cannot be imported from a named package, so its
+ * methods are looked up reflectively once. The handles are static final so the JIT inlines them
+ * like a direct call. Tables, results and generation modes are passed around as Object.
+ */
+final class Tcss343 {
+
+    static final MethodHandle BRUTE_FORCE = solver("findCheapestRentalSequenceBruteForce");
+    static final MethodHandle DIVIDE_CONQUER = solver("findCheapestRentalSequenceDivideConquer");
+    static final MethodHandle DYNAMIC = solver("findCheapestRentalSequenceDynamic");
+    static final MethodHandle GENERATE = find("generateCostTable", MethodType.methodType(Object.class, int.class, Object.class),
+            int.class, type("tcss343$GenerationMode"));
+    static final MethodHandle GENERATE_AND_SAVE = find("generateAndSaveCostTable",
+            MethodType.methodType(Object.class, int.class, Object.class), int.class, type("tcss343$GenerationMode"));
+    static final MethodHandle READ = find("readCostTableFromFile", MethodType.methodType(Object.class, String.class),
+            String.class);
+
+    private Tcss343() {
+    }
+
+    /**
+     * Returns the generation mode with the given name.
+     *
+     * @param name the name of the mode
+     *
+     * @return the mode
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object generationMode(String name) {
+        return Enum.valueOf((Class) type("tcss343$GenerationMode"), name);
+    }
+
+    /**
+     * Looks up a solver that takes a cost table and returns a result.
+     *
+     * @param name the name of the solver
+     *
+     * @return the handle, typed (Object)Object
+     */
+    private static MethodHandle solver(String name) {
+        return find(name, MethodType.methodType(Object.class, Object.class), type("CostTable"));
+    }
+
+    /**
+     * Looks up a static method of tcss343.
+     *
+     * @param name       the name of the method
+     * @param type       the type the handle is adapted to
+     * @param parameters the declared parameter types
+     *
+     * @return the handle
+     */
+    private static MethodHandle find(String name, MethodType type, Class<?>... parameters) {
+        try {
+            Method method = type("tcss343").getDeclaredMethod(name, parameters);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(type);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Unable to find tcss343." + name, ex);
+        }
+    }
+
+    /**
+     * Loads a class from the default package.
+     *
+     * @param name the binary name of the class
+     *
+     * @return the class
+     */
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Unable to load " + name, ex);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.function.Supplier;
+
+/**
+ * Runs the exponential algorithms against a deadline and returns the best sequence found so far
+ * when it passes, so a forgotten limit can no longer block a run.
+ *
+ * Both searches start from a greedy plan, so there is always an answer to return. They publish their
+ * best sequence and the fraction of the search explored to a progress listener as they go, and check
+ * the deadline and cancellation often enough to stop within a few milliseconds. A result that was
+ * returned before the search finished is flagged as not optimal.
+ */
+public final class AnytimeSolver {
+
+    /**
+     * Shortest time between two progress reports.
+     */
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    /**
+     * Number of nodes the divide and conquer search expands between deadline checks.
+     */
+    private static final int CHECK_INTERVAL = 1 << 12;
+
+    /**
+     * Receives the progress of a search.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called with the best sequence found so far and how much of the search is done.
+         *
+         * @param best     the best sequence found so far
+         * @param explored the fraction of the search explored, from 0 to 1
+         */
+        void progress(tcss343.Result best, double explored);
+    }
+
+    private final long deadlineNanos;
+    private final ProgressListener listener;
+    private volatile boolean cancelled;
+    private long lastProgressNanos;
+
+    /**
+     * Constructor that takes the time the search may take and where to report progress.
+     *
+     * @param timeoutMillis the time from now after which the search stops
+     * @param listener      the listener, or null for no progress reports
+     */
+    public AnytimeSolver(long timeoutMillis, ProgressListener listener) {
+        this.deadlineNanos = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.listener = listener;
+        this.lastProgressNanos = System.nanoTime();
+    }
+
+    /**
+     * Stops the search as if the deadline had passed. Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether or not the search has to stop.
+     *
+     * @return true once the deadline passed or the search was cancelled
+     */
+    boolean expired() {
+        return cancelled || System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Reports progress to the listener, at most once per interval. The best sequence is only
+     * built when a report is actually made.
+     *
+     * @param best     supplies the best sequence found so far
+     * @param explored the fraction of the search explored
+     */
+    synchronized void publish(Supplier<tcss343.Result> best, double explored) {
+        long now = System.nanoTime();
+        if (listener == null || now - lastProgressNanos < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+
+        lastProgressNanos = now;
+        listener.progress(best.get(), explored);
+    }
+
+    /**
+     * Finds a plan greedily by always renting to the post with the cheapest cost per post travelled,
+     * or renting straight to the end or from every post to the next if either is cheaper. The plan
+     * is an upper bound for the searches.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the plan, flagged as not optimal
+     */
+    public static tcss343.Result greedy(CostTable costTable) {
+        int n = costTable.size();
+        if (n < 2) {
+            return new tcss343.Result(new int[]{0}, 0, false);
+        }
+
+        int[] sequence = new int[n];
+        long[] row = new long[n];
+        int length = 1;
+        long total = 0;
+        long stepwise = 0;
+        for (int i = 0; i < n - 1; i++) {
+            stepwise += costTable.get(i, i + 1);
+        }
+
+        int post = 0;
+        while (post < n - 1) {
+            costTable.readRow(post, post + 1, n, row, 0);
+            int next = post + 1;
+            for (int j = post + 2; j < n; j++) {
+                // Compare cost(post, j) / (j - post) without dividing.
+                if (row[j - post - 1] * (next - post) < row[next - post - 1] * (j - post)) {
+                    next = j;
+                }
+            }
+
+            total += row[next - post - 1];
+            sequence[length++] = next;
+            post = next;
+        }
+
+        long direct = costTable.get(0, n - 1);
+        if (direct <= total && direct <= stepwise) {
+            return new tcss343.Result(new int[]{0, n - 1}, direct, false);
+        }
+
+        if (stepwise < total) {
+            int[] plan = new int[n];
+            for (int i = 0; i < n; i++) {
+                plan[i] = i;
+            }
+            return new tcss343.Result(plan, stepwise, false);
+        }
+
+        int[] plan = new int[length];
+        System.arraycopy(sequence, 0, plan, 0, length);
+        return new tcss343.Result(plan, total, false);
+    }
+
+    /**
+     * Runs the brute force algorithm until it finishes or the deadline passes. Tables with more
+     * posts than the brute force engine supports are answered with the greedy plan.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence found
+     */
+    public tcss343.Result bruteForce(CostTable costTable) {
+        tcss343.Result seed = greedy(costTable);
+        if (costTable.size() < 2) {
+            return new tcss343.Result(seed.sequence(), seed.totalCost(), true);
+        }
+        if (costTable.size() > BruteForceEngine.MAX_POSTS) {
+            return seed;
+        }
+
+        return new BruteForceEngine(costTable).solve(this, seed);
+    }
+
+    /**
+     * Runs a depth first branch and bound version of the divide and conquer algorithm until it
+     * finishes or the deadline passes. Destinations are tried nearest first like the recursive
+     * algorithm, so when it finishes the sequence is the same one the recursive algorithm finds.
+     *
+     * A subtree is skipped when its cost so far plus the cheapest rental out of its post cannot beat
+     * the best plan. The search from post j holds 2^(n - 2 - j) sequences, so finishing or skipping it
+     * explores 2^-j of the search.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence found
+     */
+    public tcss343.Result divideConquer(CostTable costTable) {
+        int n = costTable.size();
+        tcss343.Result seed = greedy(costTable);
+        if (n < 2) {
+            return new tcss343.Result(seed.sequence(), seed.totalCost(), true);
+        }
+
+        int last = n - 1;
+        long[] lowerBound = new long[n];
+        long[] row = new long[n];
+        for (int i = 0; i < last; i++) {
+            costTable.readRow(i, i + 1, n, row, 0);
+            long min = Long.MAX_VALUE;
+            for (int k = 0; k < last - i; k++) {
+                min = Math.min(min, row[k]);
+            }
+            lowerBound[i] = min;
+        }
+
+        // The posts on the current path, the cost to reach each of them and the next destination to try.
+        int[] stack = new int[n];
+        long[] cost = new long[n];
+        int[] cursor = new int[n];
+        int top = 0;
+        stack[0] = 0;
+        cursor[0] = 1;
+
+        int[] best = seed.sequence();
+        long bestCost = seed.totalCost();
+        boolean fromSearch = false;
+        double explored = 0;
+        long expanded = 0;
+
+        while (top >= 0) {
+            if (++expanded % CHECK_INTERVAL == 0) {
+                if (expired()) {
+                    break;
+                }
+
+                int[] snapshot = best;
+                long snapshotCost = bestCost;
+                publish(() -> new tcss343.Result(snapshot, snapshotCost, false), explored);
+            }
+
+            int i = stack[top];
+            int j = cursor[i];
+            if (j > last) {
+                // Every destination of i has been tried.
+                top -= 1;
+                continue;
+            }
+            cursor[i] += 1;
+
+            long reach = cost[top] + costTable.get(i, j);
+            if (j == last) {
+                explored += Math.scalb(1.0, -Math.max(last - 1, 0));
+                // The first cheapest sequence found in this order is the one to keep.
+                if (reach < bestCost || (reach == bestCost && !fromSearch)) {
+                    best = new int[top + 2];
+                    System.arraycopy(stack, 0, best, 0, top + 1);
+                    best[top + 1] = last;
+                    bestCost = reach;
+                    fromSearch = true;
+                }
+                continue;
+            }
+
+            long bound = reach + lowerBound[j];
+            if (bound > bestCost || (bound == bestCost && fromSearch)) {
+                explored += Math.scalb(1.0, -j);
+                continue;
+            }
+
+            stack[++top] = j;
+            cost[top] = reach;
+            cursor[j] = j + 1;
+        }
+
+        return new tcss343.Result(best, bestCost, top < 0);
+    }
+}
@@ -0,0 +1,475 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Picks the fastest exact algorithm for a table from a cost model instead of fixed dimension limits.
+ *
+ * The model predicts the running time of each engine as its calibrated cost per unit of work times
+ * the work it does on a table of the given dimension: subsets for brute force, calls for the
+ * recursive divide and conquer algorithm, cells for the quadratic algorithms and lookups for the
+ * Monge algorithm. The coefficients are measured once per host by a short micro-benchmark and cached
+ * to a properties file. Each table is then probed cheaply before planning:
+ *
+ * <ul>
+ * <li>a few rows are read and timed against the calibrated packed table, which accounts for the
+ * value width and for tables that compute or map their cells instead of storing them,</li>
+ * <li>sampled rows are checked for rising costs, which is what lets the memoized divide and conquer
+ * algorithm prune, so it is calibrated on both kinds of rows,</li>
+ * <li>sampled quadruples are checked against the Monge inequality, so the Monge algorithm is only
+ * considered when it is likely to apply. It still verifies the full table before using it.</li>
+ * </ul>
+ */
+public final class AutoPlanner {
+
+    /**
+     * Default file the calibration is cached to.
+     */
+    public static final String DEFAULT_CALIBRATION_FILE = "./.rental-planner.properties";
+
+    /**
+     * Version of the calibration, stored with it so stale caches are measured again.
+     */
+    private static final int CALIBRATION_VERSION = 1;
+
+    /**
+     * Number of rows sampled by the probes.
+     */
+    private static final int PROBE_ROWS = 32;
+
+    /**
+     * Largest number of cells read from a sampled row.
+     */
+    private static final int PROBE_CELLS = 2048;
+
+    /**
+     * The engines the planner chooses between.
+     */
+    public enum Engine {
+        BRUTE_FORCE("Brute Force Algorithm"),
+        DIVIDE_CONQUER("Divide and Conquer Algorithm"),
+        MEMOIZED_DIVIDE_CONQUER("Memoized Divide and Conquer Algorithm"),
+        DYNAMIC("Dynamic Programming Algorithm"),
+        PARALLEL_DYNAMIC("Parallel Dynamic Programming Algorithm"),
+        MONGE("Dynamic Programming Algorithm (Monge)");
+
+        private final String displayName;
+
+        Engine(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Returns the name the engine is printed with.
+         *
+         * @return the name
+         */
+        public String displayName() {
+            return displayName;
+        }
+
+        /**
+         * Finds the cheapest sequence of rentals with this engine.
+         *
+         * @param costTable the cost chart
+         *
+         * @return the cheapest sequence of rentals
+         */
+        public tcss343.Result solve(CostTable costTable) {
+            switch (this) {
+                case BRUTE_FORCE:
+                    return tcss343.findCheapestRentalSequenceBruteForce(costTable);
+                case DIVIDE_CONQUER:
+                    return tcss343.findCheapestRentalSequenceDivideConquer(costTable);
+                case MEMOIZED_DIVIDE_CONQUER:
+                    return tcss343.findCheapestRentalSequenceDivideConquerMemoized(costTable);
+                case PARALLEL_DYNAMIC:
+                    return new ParallelDynamicSolver().solve(costTable);
+                case MONGE:
+                    return MongeSolver.solve(costTable);
+                default:
+                    return tcss343.findCheapestRentalSequenceDynamic(costTable);
+            }
+        }
+    }
+
+    private final Calibration calibration;
+
+    /**
+     * Constructor that takes a calibration.
+     *
+     * @param calibration the calibrated cost model
+     */
+    public AutoPlanner(Calibration calibration) {
+        this.calibration = calibration;
+    }
+
+    /**
+     * Loads the calibration cached for this host from a file, measuring and caching it first if the
+     * file is missing, was measured on a different host or recalibrate is set.
+     *
+     * @param file        the cache file
+     * @param recalibrate whether or not to measure again even if a cache exists
+     *
+     * @return the planner
+     */
+    public static AutoPlanner load(File file, boolean recalibrate) {
+        Properties properties = new Properties();
+        if (!recalibrate && file.exists()) {
+            try (Reader reader = new FileReader(file)) {
+                properties.load(reader);
+            } catch (IOException ex) {
+                properties.clear();
+            }
+        }
+
+        Calibration calibration = Calibration.fromProperties(properties);
+        if (calibration == null) {
+            calibration = Calibration.measure();
+
+            try (Writer writer = new FileWriter(file)) {
+                calibration.toProperties().store(writer, "Rental planner calibration");
+            } catch (IOException ex) {
+                System.err.println("An error occurred while caching the planner calibration: " + ex.getMessage());
+            }
+        }
+
+        return new AutoPlanner(calibration);
+    }
+
+    /**
+     * Probes a table and picks the engine with the lowest predicted time.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the plan
+     */
+    public Plan plan(CostTable costTable) {
+        // Only the dynamic programming algorithm relaxes just the rentals a sparse table offers.
+        if (costTable.isSparse()) {
+            return new Plan(Engine.DYNAMIC, calibration.dynamicPerCell * costTable.availableCount(), costTable.width(), 1, false, false);
+        }
+
+        int n = costTable.size();
+        double readFactor = Math.max(probeReadNanos(costTable) / calibration.readPerCell, 1);
+        boolean monotone = probeMonotone(costTable);
+        boolean monge = MongeSolver.isLikelyMonge(costTable);
+
+        double cells = (double) n * (n - 1) / 2;
+        Engine best = null;
+        double bestNanos = Double.POSITIVE_INFINITY;
+        for (Engine engine : Engine.values()) {
+            double nanos;
+            switch (engine) {
+                case BRUTE_FORCE:
+                    nanos = n - 2 < BruteForceEngine.MAX_POSTS
+                            ? calibration.bruteForcePerSubset * Math.pow(2, Math.max(n - 2, 0)) * readFactor
+                            : Double.POSITIVE_INFINITY;
+                    break;
+                case DIVIDE_CONQUER:
+                    nanos = calibration.divideConquerPerCall * Math.pow(2, Math.max(n - 1, 0)) * readFactor;
+                    break;
+                case MEMOIZED_DIVIDE_CONQUER:
+                    nanos = (monotone ? calibration.memoizedPerCellMonotone : calibration.memoizedPerCellRandom)
+                            * cells * readFactor;
+                    break;
+                case PARALLEL_DYNAMIC:
+                    nanos = calibration.parallelFixed + calibration.parallelPerCell * cells * readFactor;
+                    break;
+                case MONGE:
+                    nanos = monge ? (calibration.mongeCheckPerCell * cells
+                            + calibration.mongePerLookup * n * Math.max(log2(n), 1)) * readFactor
+                            : Double.POSITIVE_INFINITY;
+                    break;
+                default:
+                    nanos = calibration.dynamicPerCell * cells * readFactor;
+                    break;
+            }
+
+            if (nanos < bestNanos) {
+                best = engine;
+                bestNanos = nanos;
+            }
+        }
+
+        return new Plan(best, bestNanos, costTable.width(), readFactor, monotone, monge);
+    }
+
+    /**
+     * Times reading sampled rows of a table.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the best time per cell over a few passes, in nanoseconds
+     */
+    private static double probeReadNanos(CostTable costTable) {
+        int n = costTable.size();
+        long[] row = new long[Math.min(PROBE_CELLS, Math.max(n, 1))];
+        double best = Double.POSITIVE_INFINITY;
+        long sink = 0;
+
+        for (int pass = 0; pass < 5; pass++) {
+            long cells = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < n - 1; i += Math.max((n - 1) / PROBE_ROWS, 1)) {
+                int to = Math.min(n, i + 1 + row.length);
+                costTable.readRow(i, i + 1, to, row, 0);
+                sink += row[0];
+                cells += to - i - 1;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (cells > 0) {
+                best = Math.min(best, (double) elapsed / cells);
+            }
+        }
+
+        // Keeps the reads from being optimized away.
+        return sink == Long.MIN_VALUE || best == Double.POSITIVE_INFINITY ? 0 : best;
+    }
+
+    /**
+     * Checks whether sampled rows of a table never get cheaper further along the row.
+     *
+     * @param costTable the cost chart
+     *
+     * @return true if every sampled row rises
+     */
+    private static boolean probeMonotone(CostTable costTable) {
+        int n = costTable.size();
+        long[] row = new long[Math.min(PROBE_CELLS, Math.max(n, 1))];
+        for (int i = 0; i < n - 1; i += Math.max((n - 1) / PROBE_ROWS, 1)) {
+            int to = Math.min(n, i + 1 + row.length);
+            costTable.readRow(i, i + 1, to, row, 0);
+            for (int k = 1; k < to - i - 1; k++) {
+                if (row[k] < row[k - 1]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    /**
+     * The engine chosen for a table, its predicted time and what the probes found.
+     */
+    public static final class Plan {
+
+        private final Engine engine;
+        private final double predictedNanos;
+        private final CostTable.Width width;
+        private final double readFactor;
+        private final boolean monotone;
+        private final boolean monge;
+
+        private Plan(Engine engine, double predictedNanos, CostTable.Width width, double readFactor,
+                     boolean monotone, boolean monge) {
+            this.engine = engine;
+            this.predictedNanos = predictedNanos;
+            this.width = width;
+            this.readFactor = readFactor;
+            this.monotone = monotone;
+            this.monge = monge;
+        }
+
+        public Engine engine() {
+            return engine;
+        }
+
+        public double predictedNanos() {
+            return predictedNanos;
+        }
+
+        /**
+         * Finds the cheapest sequence of rentals with the chosen engine. The Monge algorithm is only
+         * chosen after the sample passed, so the sample is not run again and only the full check is left.
+         *
+         * @param costTable the cost chart the plan was made for
+         *
+         * @return the cheapest sequence of rentals
+         */
+        public tcss343.Result solve(CostTable costTable) {
+            if (engine == Engine.MONGE) {
+                return MongeSolver.isMonge(costTable) ? MongeSolver.solveMonge(costTable)
+                        : tcss343.findCheapestRentalSequenceDynamic(costTable);
+            }
+
+            return engine.solve(costTable);
+        }
+
+        /**
+         * Describes the probes the plan was made from.
+         *
+         * @return the description
+         */
+        public String describeProbes() {
+            return String.format("%s values, read cost %.1fx, %s rows, %s", width, readFactor,
+                    monotone ? "rising" : "unordered", monge ? "likely Monge" : "not Monge");
+        }
+    }
+
+    /**
+     * The calibrated coefficients of the cost model, in nanoseconds per unit of work.
+     */
+    public static final class Calibration {
+
+        private double readPerCell;
+        private double bruteForcePerSubset;
+        private double divideConquerPerCall;
+        private double memoizedPerCellRandom;
+        private double memoizedPerCellMonotone;
+        private double dynamicPerCell;
+        private double parallelFixed;
+        private double parallelPerCell;
+        private double mongeCheckPerCell;
+        private double mongePerLookup;
+
+        private Calibration() {
+        }
+
+        /**
+         * Runs the micro-benchmark on this host. Every engine is timed on a small table, the best
+         * of a few runs after a warm-up run, and divided by the work it did.
+         *
+         * @return the calibration
+         */
+        public static Calibration measure() {
+            Calibration calibration = new Calibration();
+            long seed = 343;
+
+            CostTable random = tcss343.generateCostTable(2000, tcss343.GenerationMode.RANDOM, seed);
+            CostTable dependent = tcss343.generateCostTable(2000, tcss343.GenerationMode.DEPENDENT, seed);
+            double cells = cells(2000);
+
+            // The read probe times itself, it only needs to be warmed up first.
+            for (int k = 0; k < 10; k++) {
+                probeReadNanos(random);
+            }
+            calibration.readPerCell = probeReadNanos(random);
+
+            CostTable bruteForce = tcss343.generateCostTable(22, tcss343.GenerationMode.RANDOM, seed);
+            calibration.bruteForcePerSubset = time(() -> Engine.BRUTE_FORCE.solve(bruteForce)) / Math.pow(2, 20);
+
+            CostTable divideConquer = tcss343.generateCostTable(18, tcss343.GenerationMode.RANDOM, seed);
+            calibration.divideConquerPerCall = time(() -> Engine.DIVIDE_CONQUER.solve(divideConquer)) / Math.pow(2, 17);
+
+            calibration.memoizedPerCellRandom = time(() -> Engine.MEMOIZED_DIVIDE_CONQUER.solve(random)) / cells;
+            calibration.memoizedPerCellMonotone = time(() -> Engine.MEMOIZED_DIVIDE_CONQUER.solve(dependent)) / cells;
+
+            // The quadratic algorithms are timed on a table larger than the caches like the tables they are picked for.
+            CostTable large = tcss343.generateCostTable(4000, tcss343.GenerationMode.RANDOM, seed);
+            calibration.dynamicPerCell = time(() -> Engine.DYNAMIC.solve(large)) / cells(4000);
+
+            // The parallel algorithm is fitted as a fixed cost plus a cost per cell from a small and a large table.
+            CostTable small = tcss343.generateCostTable(200, tcss343.GenerationMode.RANDOM, seed);
+            double smallNanos = time(() -> Engine.PARALLEL_DYNAMIC.solve(small));
+            double largeNanos = time(() -> Engine.PARALLEL_DYNAMIC.solve(large));
+            calibration.parallelPerCell = Math.max((largeNanos - smallNanos) / (cells(4000) - cells(200)), 0);
+            calibration.parallelFixed = Math.max(smallNanos - calibration.parallelPerCell * cells(200), 0);
+
+            // A table whose cost grows with the square of the distance is Monge.
+            PackedCostTable monge = PackedCostTable.allocate(2000, 2000L * 2000);
+            for (int i = 0; i < 2000; i++) {
+                for (int j = i + 1; j < 2000; j++) {
+                    monge.set(i, j, (long) (j - i) * (j - i));
+                }
+            }
+            calibration.mongeCheckPerCell = time(() -> MongeSolver.isMonge(monge)) / cells;
+            calibration.mongePerLookup = time(() -> MongeSolver.solveMonge(monge)) / (2000 * log2(2000));
+
+            return calibration;
+        }
+
+        /**
+         * Reads a calibration from properties.
+         *
+         * @param properties the properties
+         *
+         * @return the calibration, or null if it is missing, invalid or was measured on a different host
+         */
+        static Calibration fromProperties(Properties properties) {
+            if (!host().equals(properties.getProperty("host"))) {
+                return null;
+            }
+
+            try {
+                Calibration calibration = new Calibration();
+                calibration.readPerCell = Double.parseDouble(properties.getProperty("readPerCell"));
+                calibration.bruteForcePerSubset = Double.parseDouble(properties.getProperty("bruteForcePerSubset"));
+                calibration.divideConquerPerCall = Double.parseDouble(properties.getProperty("divideConquerPerCall"));
+                calibration.memoizedPerCellRandom = Double.parseDouble(properties.getProperty("memoizedPerCellRandom"));
+                calibration.memoizedPerCellMonotone = Double.parseDouble(properties.getProperty("memoizedPerCellMonotone"));
+                calibration.dynamicPerCell = Double.parseDouble(properties.getProperty("dynamicPerCell"));
+                calibration.parallelFixed = Double.parseDouble(properties.getProperty("parallelFixed"));
+                calibration.parallelPerCell = Double.parseDouble(properties.getProperty("parallelPerCell"));
+                calibration.mongeCheckPerCell = Double.parseDouble(properties.getProperty("mongeCheckPerCell"));
+                calibration.mongePerLookup = Double.parseDouble(properties.getProperty("mongePerLookup"));
+                return calibration;
+            } catch (NullPointerException | NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Writes this calibration to properties.
+         *
+         * @return the properties
+         */
+        Properties toProperties() {
+            Properties properties = new Properties();
+            properties.setProperty("host", host());
+            properties.setProperty("readPerCell", String.valueOf(readPerCell));
+            properties.setProperty("bruteForcePerSubset", String.valueOf(bruteForcePerSubset));
+            properties.setProperty("divideConquerPerCall", String.valueOf(divideConquerPerCall));
+            properties.setProperty("memoizedPerCellRandom", String.valueOf(memoizedPerCellRandom));
+            properties.setProperty("memoizedPerCellMonotone", String.valueOf(memoizedPerCellMonotone));
+            properties.setProperty("dynamicPerCell", String.valueOf(dynamicPerCell));
+            properties.setProperty("parallelFixed", String.valueOf(parallelFixed));
+            properties.setProperty("parallelPerCell", String.valueOf(parallelPerCell));
+            properties.setProperty("mongeCheckPerCell", String.valueOf(mongeCheckPerCell));
+            properties.setProperty("mongePerLookup", String.valueOf(mongePerLookup));
+            return properties;
+        }
+
+        /**
+         * Describes the host a calibration is valid for.
+         *
+         * @return the description
+         */
+        private static String host() {
+            return String.format("v%s %s %s %s cpus", CALIBRATION_VERSION, System.getProperty("java.version"),
+                    System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * Times a run, the best of three after a warm-up run.
+         *
+         * @param run the run
+         *
+         * @return the time in nanoseconds
+         */
+        private static double time(Runnable run) {
+            run.run();
+            long best = Long.MAX_VALUE;
+            for (int k = 0; k < 3; k++) {
+                long start = System.nanoTime();
+                run.run();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        }
+
+        private static double cells(int n) {
+            return (double) n * (n - 1) / 2;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Solves many table files concurrently with bounded memory.
+ *
+ * Files are loaded on a pool of loader threads, which mostly wait on the disk, and solved on a
+ * separate fixed pool sized for the CPUs. Before a file is loaded the memory its table is expected to
+ * take is reserved from a semaphore and it is only released once the file is solved, so submitting
+ * stops while the tables in flight would exceed the memory budget. Results are written one line per
+ * file in the order the files were given, as soon as every file before them is done.
+ */
+public final class BatchRunner {
+
+    /**
+     * Bytes per semaphore permit, so budgets of terabytes still fit the int permit count.
+     */
+    private static final int PERMIT_BYTES = 1024;
+
+    private final int solverThreads;
+    private final int loaderThreads;
+    private final long memoryBudget;
+    private final String algorithm;
+    private final Function<CostTable, tcss343.Result> solver;
+    private final SolverMetrics metrics;
+
+    private long failures;
+
+    /**
+     * Constructor that takes the sizes of the pools, the memory budget and the algorithm to solve with.
+     *
+     * @param solverThreads the number of threads solving tables
+     * @param loaderThreads the number of threads loading tables
+     * @param memoryBudget  the number of bytes the tables in flight may take
+     * @param algorithm     the name of the algorithm, written with each result
+     * @param solver        the algorithm
+     * @param metrics       the metrics each load and solve is measured with
+     */
+    public BatchRunner(int solverThreads, int loaderThreads, long memoryBudget, String algorithm,
+                       Function<CostTable, tcss343.Result> solver, SolverMetrics metrics) {
+        if (solverThreads < 1 || loaderThreads < 1) {
+            throw new IllegalArgumentException(String.format("Invalid thread counts: %s solvers, %s loaders",
+                    solverThreads, loaderThreads));
+        }
+
+        this.solverThreads = solverThreads;
+        this.loaderThreads = loaderThreads;
+        this.memoryBudget = Math.max(memoryBudget, PERMIT_BYTES);
+        this.algorithm = algorithm;
+        this.solver = solver;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Lists the files of a batch. A directory stands for every file in it sorted by name, anything
+     * else is read as a manifest with one path per line, skipping blank lines and lines starting
+     * with #. Relative paths in a manifest are resolved against the directory of the manifest.
+     *
+     * @param source the directory or manifest
+     *
+     * @return the files in the order they are reported
+     *
+     * @throws IOException if the directory or manifest cannot be read
+     */
+    public static List<File> listInputs(File source) throws IOException {
+        List<File> files = new ArrayList<>();
+        if (source.isDirectory()) {
+            File[] children = source.listFiles(File::isFile);
+            if (children == null) {
+                throw new IOException("Cannot list directory: " + source);
+            }
+
+            Arrays.sort(children);
+            files.addAll(Arrays.asList(children));
+            return files;
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(source))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                File file = new File(line);
+                files.add(file.isAbsolute() ? file : new File(source.getAbsoluteFile().getParentFile(), line));
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Estimates the memory a file takes while it is solved. Binary tables are mapped so only the
+     * arrays of the solver count, compressed tables also count their cells at the width in their
+     * header and text tables at the int width.
+     *
+     * @param file the table file
+     *
+     * @return the estimated number of bytes
+     *
+     * @throws IOException if the file cannot be read
+     */
+    static long estimateBytes(File file) throws IOException {
+        int n;
+        if (MappedCostTable.isBinary(file)) {
+            n = MappedCostTable.open(file).size();
+            return 16L * n;
+        }
+
+        if (CompressedTableFormat.isCompressed(file)) {
+            try (CompressedTableFormat.Decoder decoder = CompressedTableFormat.Decoder.open(file)) {
+                n = decoder.size();
+                return PackedCostTable.cellCount(n) * decoder.width().bytes() + 16L * n;
+            }
+        }
+
+        n = 1;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            int c;
+            while ((c = br.read()) != -1 && c != '\n') {
+                if (c == '\t') {
+                    n += 1;
+                }
+            }
+        }
+
+        return PackedCostTable.cellCount(n) * Integer.BYTES + 16L * n;
+    }
+
+    /**
+     * Solves every file and writes a result line for each one in order.
+     *
+     * @param files the files
+     * @param out   where the results are written
+     *
+     * @throws IOException          if the results cannot be written
+     * @throws InterruptedException if interrupted while waiting for memory or results
+     */
+    public void run(List<File> files, ReportWriter out) throws IOException, InterruptedException {
+        int budgetPermits = (int) Math.min(memoryBudget / PERMIT_BYTES, Integer.MAX_VALUE);
+        Semaphore memory = new Semaphore(budgetPermits);
+        ExecutorService loaders = Executors.newFixedThreadPool(loaderThreads);
+        ExecutorService solvers = Executors.newFixedThreadPool(solverThreads);
+        Deque<Pending> pending = new ArrayDeque<>();
+        failures = 0;
+
+        try {
+            for (File file : files) {
+                // A table larger than the whole budget runs on its own rather than never.
+                long estimate;
+                try {
+                    estimate = estimateBytes(file);
+                } catch (IOException ex) {
+                    estimate = 0;
+                }
+                int permits = (int) Math.min(Math.max((estimate + PERMIT_BYTES - 1) / PERMIT_BYTES, 1), budgetPermits);
+
+                memory.acquire(permits);
+                Pending entry = new Pending(file);
+                entry.future = CompletableFuture
+                        .supplyAsync(() -> load(file), loaders)
+                        .thenApplyAsync(table -> {
+                            entry.posts = table.size();
+                            return solve(file, table);
+                        }, solvers)
+                        .whenComplete((result, error) -> memory.release(permits));
+                pending.add(entry);
+
+                // Write whatever finished at the head of the batch without waiting.
+                while (!pending.isEmpty() && pending.peek().future.isDone()) {
+                    write(pending.poll(), out);
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out);
+            }
+        } finally {
+            loaders.shutdownNow();
+            solvers.shutdownNow();
+            loaders.awaitTermination(1, TimeUnit.MINUTES);
+            solvers.awaitTermination(1, TimeUnit.MINUTES);
+            out.flush();
+        }
+    }
+
+    /**
+     * Returns the number of files of the last run that could not be solved.
+     *
+     * @return the number of failures
+     */
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * Loads a table file.
+     *
+     * @param file the file
+     *
+     * @return the table
+     */
+    private CostTable load(File file) {
+        try {
+            // Files load side by side, so each is measured on its own thread.
+            SolverMetrics.Span span = metrics.startThread("read", "Table File", file.getPath());
+            CostTable costTable = tcss343.readCostTableFromFile(file.getPath());
+            span.finish(costTable.size(), PackedCostTable.cellCount(costTable.size()),
+                    PackedCostTable.cellCount(costTable.size()), "cells");
+            return costTable;
+        } catch (IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Solves a loaded table.
+     *
+     * @param file      the file the table was loaded from
+     * @param costTable the table
+     *
+     * @return the cheapest sequence of rentals
+     */
+    private tcss343.Result solve(File file, CostTable costTable) {
+        SolverMetrics.Span span = metrics.startThread("solve", algorithm, file.getPath());
+        tcss343.Result result = solver.apply(span.count(costTable));
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+        return result;
+    }
+
+    /**
+     * Waits for a file to be solved and writes its result.
+     *
+     * @param pending the file and its result
+     * @param out     where the result is written
+     *
+     * @throws IOException          if the result cannot be written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void write(Pending pending, ReportWriter out) throws IOException, InterruptedException {
+        try {
+            tcss343.Result result = pending.future.get();
+            out.write(pending.file.getPath(), algorithm, pending.posts, result);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            failures += 1;
+            Throwable cause = ex.getCause() instanceof CompletionException && ex.getCause().getCause() != null
+                    ? ex.getCause().getCause() : ex.getCause();
+            out.flush();
+            System.err.println(String.format("An error occurred while solving %s: %s", pending.file.getPath(), cause.getMessage()));
+        }
+    }
+
+    /**
+     * A file that has been submitted and its result to come.
+     */
+    private static final class Pending {
+
+        private final File file;
+        private CompletableFuture<tcss343.Result> future;
+        // Set before the future completes, so it is visible once the result is.
+        private int posts;
+
+        private Pending(File file) {
+            this.file = file;
+        }
+    }
+}
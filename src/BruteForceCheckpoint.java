@@ -0,0 +1,277 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Properties;
+
+/**
+ * The progress of a brute force search, saved to a file so a restarted run skips the work that
+ * was already done.
+ *
+ * The masks are split into chunks of 2^lowBits masks, chunk c holding the masks from c * 2^lowBits
+ * up to (c + 1) * 2^lowBits. Chunks are searched independently, so any number of workers can take
+ * the chunks that are not done yet in any order. The file is a properties file that holds the
+ * completed chunks as ranges, such as "0-4095,4100-4101", next to the best cost and mask found in
+ * them and a fingerprint of the table, so a checkpoint is never resumed against another table.
+ */
+public final class BruteForceCheckpoint {
+
+    /**
+     * Version of the checkpoint file.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Largest number of chunks, so the completed chunks fit a small bit set.
+     */
+    static final int MAX_CHUNK_BITS = 24;
+
+    private final File file;
+    private final int posts;
+    private final long fingerprint;
+    private final int lowBits;
+    private final long chunks;
+    private final BitSet completed;
+    private final long resumedChunks;
+
+    /**
+     * Held while the file is written, so two saves never share the temporary file.
+     */
+    private final Object saveLock = new Object();
+    private long bestCost = Long.MAX_VALUE;
+    private long bestMask = -1;
+
+    private BruteForceCheckpoint(File file, int posts, long fingerprint, int lowBits, long chunks, BitSet completed) {
+        this.file = file;
+        this.posts = posts;
+        this.fingerprint = fingerprint;
+        this.lowBits = lowBits;
+        this.chunks = chunks;
+        this.completed = completed;
+        this.resumedChunks = completed.cardinality();
+    }
+
+    /**
+     * Starts a new checkpoint, replacing whatever the file held once it is first saved.
+     *
+     * @param file        the checkpoint file
+     * @param posts       the number of posts of the table
+     * @param fingerprint the fingerprint of the table
+     * @param bits        the number of bits of a mask
+     * @param chunkBits   the number of low bits a chunk should enumerate
+     *
+     * @return the checkpoint with no chunks done
+     */
+    static BruteForceCheckpoint create(File file, int posts, long fingerprint, int bits, int chunkBits) {
+        int lowBits = Math.max(Math.min(bits, chunkBits), bits - MAX_CHUNK_BITS);
+        return new BruteForceCheckpoint(file, posts, fingerprint, lowBits, 1L << (bits - lowBits), new BitSet());
+    }
+
+    /**
+     * Loads a checkpoint to resume a search.
+     *
+     * @param file        the checkpoint file
+     * @param posts       the number of posts of the table
+     * @param fingerprint the fingerprint of the table
+     *
+     * @return the checkpoint
+     *
+     * @throws IOException if the file cannot be read, is not a valid checkpoint or is for another table
+     */
+    static BruteForceCheckpoint resume(File file, int posts, long fingerprint) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+
+        try {
+            if (Integer.parseInt(properties.getProperty("version", "0")) != VERSION) {
+                throw new IOException("Unsupported checkpoint version: " + file);
+            }
+            if (Integer.parseInt(properties.getProperty("posts")) != posts
+                    || Long.parseLong(properties.getProperty("fingerprint")) != fingerprint) {
+                throw new IOException("Checkpoint is for another table: " + file);
+            }
+
+            int lowBits = Integer.parseInt(properties.getProperty("lowBits"));
+            long chunks = Long.parseLong(properties.getProperty("chunks"));
+            if (lowBits < 0 || chunks < 1 || chunks > 1L << MAX_CHUNK_BITS) {
+                throw new IOException("Corrupt checkpoint: " + file);
+            }
+
+            BitSet completed = new BitSet();
+            String ranges = properties.getProperty("completed", "").trim();
+            if (!ranges.isEmpty()) {
+                for (String range : ranges.split(",")) {
+                    String[] bounds = range.split("-");
+                    int from = Integer.parseInt(bounds[0]);
+                    int to = Integer.parseInt(bounds[bounds.length - 1]);
+                    if (from < 0 || to < from || to >= chunks) {
+                        throw new IOException("Corrupt checkpoint range " + range + ": " + file);
+                    }
+                    completed.set(from, to + 1);
+                }
+            }
+
+            BruteForceCheckpoint checkpoint = new BruteForceCheckpoint(file, posts, fingerprint, lowBits, chunks, completed);
+            if (!completed.isEmpty()) {
+                checkpoint.bestCost = Long.parseLong(properties.getProperty("bestCost"));
+                checkpoint.bestMask = Long.parseLong(properties.getProperty("bestMask"));
+            }
+            return checkpoint;
+        } catch (NumberFormatException | NullPointerException ex) {
+            throw new IOException("Corrupt checkpoint: " + file, ex);
+        }
+    }
+
+    /**
+     * Returns the number of low bits each chunk enumerates.
+     *
+     * @return the number of low bits
+     */
+    public int lowBits() {
+        return lowBits;
+    }
+
+    /**
+     * Returns the number of chunks.
+     *
+     * @return the number of chunks
+     */
+    public long chunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the number of chunks that were already done when the checkpoint was loaded.
+     *
+     * @return the number of chunks
+     */
+    public long resumedChunks() {
+        return resumedChunks;
+    }
+
+    /**
+     * Returns the number of chunks done.
+     *
+     * @return the number of chunks
+     */
+    public synchronized long completedChunks() {
+        return completed.cardinality();
+    }
+
+    /**
+     * Returns whether or not a chunk is done.
+     *
+     * @param chunk the chunk
+     *
+     * @return true if it was searched
+     */
+    synchronized boolean isComplete(long chunk) {
+        return completed.get((int) chunk);
+    }
+
+    /**
+     * Records a searched chunk and the best mask found in it. Ties go to the smallest mask, as in
+     * the search itself.
+     *
+     * @param chunk the chunk
+     * @param cost  the best cost in the chunk
+     * @param mask  the mask with that cost
+     */
+    synchronized void complete(long chunk, long cost, long mask) {
+        completed.set((int) chunk);
+        if (bestMask < 0 || cost < bestCost || (cost == bestCost && mask < bestMask)) {
+            bestCost = cost;
+            bestMask = mask;
+        }
+    }
+
+    /**
+     * Returns the best cost in the chunks done.
+     *
+     * @return the best cost, only meaningful once a chunk is done
+     */
+    synchronized long bestCost() {
+        return bestCost;
+    }
+
+    /**
+     * Returns the mask of the best cost in the chunks done.
+     *
+     * @return the mask, -1 when no chunk is done
+     */
+    synchronized long bestMask() {
+        return bestMask;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it over the checkpoint file, so a run
+     * stopped while saving leaves the previous checkpoint intact. Saves run one at a time, while
+     * chunks keep completing during the write.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            write();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the checkpoint to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void write() throws IOException {
+        Properties properties = new Properties();
+        synchronized (this) {
+            properties.setProperty("version", String.valueOf(VERSION));
+            properties.setProperty("posts", String.valueOf(posts));
+            properties.setProperty("fingerprint", String.valueOf(fingerprint));
+            properties.setProperty("lowBits", String.valueOf(lowBits));
+            properties.setProperty("chunks", String.valueOf(chunks));
+            properties.setProperty("completed", describeRanges());
+            if (bestMask >= 0) {
+                properties.setProperty("bestCost", String.valueOf(bestCost));
+                properties.setProperty("bestMask", String.valueOf(bestMask));
+            }
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(temporary)) {
+            properties.store(writer, "Brute force checkpoint");
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (java.nio.file.AtomicMoveNotSupportedException ex) {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Describes the chunks done as comma separated ranges.
+     *
+     * @return the ranges
+     */
+    private String describeRanges() {
+        StringBuilder builder = new StringBuilder();
+        for (int from = completed.nextSetBit(0); from >= 0; ) {
+            int to = completed.nextClearBit(from) - 1;
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(from);
+            if (to > from) {
+                builder.append('-').append(to);
+            }
+            from = completed.nextSetBit(to + 1);
+        }
+        return builder.toString();
+    }
+}
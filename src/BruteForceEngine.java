@@ -0,0 +1,427 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Brute force search over every subset of the posts between the first and last post.
+ *
+ * Bit b of a mask stands for post b + 1. The mask space is split on its high bits into prefixes
+ * that are searched in parallel on a fork-join pool. Within a prefix the low bits are enumerated in
+ * Gray code order so consecutive masks differ by a single post, and the cost of the new sequence is
+ * updated from the previous one by replacing one or two rentals instead of being summed again.
+ * Only the winning mask is kept, the sequence is built once at the end.
+ */
+public final class BruteForceEngine {
+
+    /**
+     * Largest number of posts the engine supports. The posts between the first and the last
+     * must fit in the low 62 bits of a long so the number of masks fits a long as well.
+     */
+    public static final int MAX_POSTS = 64;
+
+    /**
+     * Number of low bits below which a search is not worth splitting.
+     */
+    private static final int MIN_LEAF_BITS = 16;
+
+    /**
+     * Number of low bits searched between two deadline checks of a search with a deadline, and in
+     * each chunk of a checkpointed search.
+     */
+    private static final int CHUNK_BITS = 20;
+
+    /**
+     * Cost given to the rentals a sparse table does not offer. A sequence has fewer than
+     * {@link #MAX_POSTS} rentals so sums of it never overflow, and a sequence using one costs more
+     * than any sequence of offered rentals, which must each cost less than PENALTY / MAX_POSTS.
+     */
+    private static final long PENALTY = Long.MAX_VALUE / MAX_POSTS;
+
+    private final int n;
+    private final long[] costs;
+    private final boolean sparse;
+    private final int bits;
+    private long subsetsEvaluated;
+    private long elapsedNanos;
+
+    /**
+     * Constructor that takes the cost table to search.
+     *
+     * @param costTable the cost chart
+     */
+    public BruteForceEngine(CostTable costTable) {
+        this.n = costTable.size();
+        if (n > MAX_POSTS) {
+            throw new IllegalArgumentException(String.format("Brute force supports at most %s posts: %s", MAX_POSTS, n));
+        }
+
+        // Copy the table into a dense array since it is tiny and read on every step.
+        this.costs = new long[n * n];
+        for (int i = 0; i < n - 1; i++) {
+            costTable.readRow(i, i + 1, n, costs, i * n + i + 1);
+        }
+
+        // Unavailable rentals are priced out of every search instead of being checked on every step.
+        this.sparse = costTable.isSparse();
+        if (sparse) {
+            for (int k = 0; k < costs.length; k++) {
+                if (costs[k] == CostTable.UNAVAILABLE) {
+                    costs[k] = PENALTY;
+                } else if (costs[k] >= PENALTY / MAX_POSTS) {
+                    throw new IllegalArgumentException("Costs are too large to search a sparse table: " + costs[k]);
+                }
+            }
+        }
+
+        this.bits = Math.max(n - 2, 0);
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals.
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public tcss343.Result solve() {
+        long start = System.nanoTime();
+
+        if (n < 2) {
+            return new tcss343.Result(new int[]{0}, 0);
+        }
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int prefixBits = 0;
+        if (bits > MIN_LEAF_BITS && parallelism > 1) {
+            // Aim for plenty of prefixes per worker so uneven workers still balance.
+            int wanted = 32 - Integer.numberOfLeadingZeros(parallelism * 64 - 1);
+            prefixBits = Math.min(wanted, bits - MIN_LEAF_BITS);
+        }
+
+        long[] best = ForkJoinPool.commonPool().invoke(new SearchTask(0, 1L << prefixBits, bits - prefixBits));
+
+        subsetsEvaluated = 1L << bits;
+        elapsedNanos = System.nanoTime() - start;
+
+        return resultOf(best[0], best[1], true);
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals unless the deadline of a solver passes first. The masks
+     * are split into chunks that the workers of the common pool take in order, and the deadline is
+     * checked between chunks. The best mask so far and the fraction of chunks searched are published
+     * to the solver after every chunk.
+     *
+     * @param solver the solver holding the deadline
+     * @param seed   a plan to return if no chunk is searched in time
+     *
+     * @return the cheapest sequence found, flagged as not optimal unless every chunk was searched
+     */
+    tcss343.Result solve(AnytimeSolver solver, tcss343.Result seed) {
+        long start = System.nanoTime();
+        int lowBits = Math.min(bits, CHUNK_BITS);
+        long chunks = 1L << (bits - lowBits);
+        AtomicLong next = new AtomicLong();
+        AtomicLong searched = new AtomicLong();
+
+        // The seed is a subset like any other, so it takes part in the tie rule on masks.
+        long seedMask = 0;
+        for (int post : seed.sequence()) {
+            if (post > 0 && post < n - 1) {
+                seedMask |= 1L << (post - 1);
+            }
+        }
+        long[] best = {seed.totalCost(), seedMask};
+
+        int workers = (int) Math.min(Math.max(ForkJoinPool.getCommonPoolParallelism(), 1), chunks);
+        IntStream.range(0, workers).parallel().forEach(worker -> {
+            long chunk;
+            while (!solver.expired() && (chunk = next.getAndIncrement()) < chunks) {
+                long[] found = searchPrefix(chunk, lowBits);
+                synchronized (best) {
+                    if (found[0] < best[0] || (found[0] == best[0] && found[1] < best[1])) {
+                        best[0] = found[0];
+                        best[1] = found[1];
+                    }
+                }
+
+                double explored = (double) searched.incrementAndGet() / chunks;
+                solver.publish(() -> {
+                    synchronized (best) {
+                        return resultOf(best[0], best[1], false);
+                    }
+                }, explored);
+            }
+        });
+
+        subsetsEvaluated = searched.get() << lowBits;
+        elapsedNanos = System.nanoTime() - start;
+
+        return resultOf(best[0], best[1], searched.get() == chunks);
+    }
+
+    /**
+     * Starts a checkpoint for a search of this table.
+     *
+     * @param file the checkpoint file
+     *
+     * @return a checkpoint with nothing searched
+     */
+    public BruteForceCheckpoint newCheckpoint(File file) {
+        return BruteForceCheckpoint.create(file, n, fingerprint(), bits, CHUNK_BITS);
+    }
+
+    /**
+     * Loads a checkpoint of a search of this table.
+     *
+     * @param file the checkpoint file
+     *
+     * @return the checkpoint
+     *
+     * @throws IOException if the file cannot be read or holds a checkpoint of another table
+     */
+    public BruteForceCheckpoint resumeCheckpoint(File file) throws IOException {
+        BruteForceCheckpoint checkpoint = BruteForceCheckpoint.resume(file, n, fingerprint());
+        if (checkpoint.chunks() << checkpoint.lowBits() != 1L << bits) {
+            throw new IOException("Checkpoint does not cover the masks of this table: " + file);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals, searching only the chunks a checkpoint does not have
+     * yet and saving the checkpoint every interval and at the end. Workers take the remaining chunks
+     * in order, so a run stopped at any point loses at most the chunks in flight.
+     *
+     * @param checkpoint     the checkpoint
+     * @param workers        the number of threads searching chunks
+     * @param intervalMillis the time between two saves of the checkpoint
+     *
+     * @return the cheapest sequence of rentals
+     *
+     * @throws IOException if the checkpoint cannot be saved
+     */
+    public tcss343.Result solve(BruteForceCheckpoint checkpoint, int workers, long intervalMillis) throws IOException {
+        long start = System.nanoTime();
+
+        if (n < 2) {
+            return new tcss343.Result(new int[]{0}, 0);
+        }
+
+        int lowBits = checkpoint.lowBits();
+        long chunks = checkpoint.chunks();
+        AtomicLong next = new AtomicLong();
+        AtomicLong searched = new AtomicLong();
+        AtomicLong lastSave = new AtomicLong(System.nanoTime());
+        long intervalNanos = intervalMillis * 1_000_000L;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(workers, 1));
+        try {
+            Future<?>[] futures = new Future<?>[Math.max(workers, 1)];
+            for (int w = 0; w < futures.length; w++) {
+                futures[w] = pool.submit(() -> {
+                    long chunk;
+                    while ((chunk = next.getAndIncrement()) < chunks) {
+                        if (checkpoint.isComplete(chunk)) {
+                            continue;
+                        }
+
+                        long[] found = searchPrefix(chunk, lowBits);
+                        checkpoint.complete(chunk, found[0], found[1]);
+                        searched.incrementAndGet();
+
+                        // Whichever worker sees the interval pass first saves.
+                        long last = lastSave.get();
+                        if (System.nanoTime() - last >= intervalNanos && lastSave.compareAndSet(last, System.nanoTime())) {
+                            checkpoint.save();
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching", ex);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        checkpoint.save();
+        subsetsEvaluated = searched.get() << lowBits;
+        elapsedNanos = System.nanoTime() - start;
+
+        return resultOf(checkpoint.bestCost(), checkpoint.bestMask(), true);
+    }
+
+    /**
+     * Returns a fingerprint of the costs of the table, so a checkpoint is only resumed against the
+     * table it was taken from.
+     *
+     * @return the fingerprint
+     */
+    long fingerprint() {
+        long hash = 0xCBF29CE484222325L ^ n;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                hash = (hash ^ costs[i * n + j]) * 0x100000001B3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of subsets evaluated by the last solve.
+     *
+     * @return the number of subsets
+     */
+    public long subsetsEvaluated() {
+        return subsetsEvaluated;
+    }
+
+    /**
+     * Returns the number of subsets evaluated per second by the last solve.
+     *
+     * @return the number of subsets per second
+     */
+    public double subsetsPerSecond() {
+        return elapsedNanos == 0 ? 0 : subsetsEvaluated / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Builds the result of the best mask of a search.
+     *
+     * @param cost    the cost of the mask
+     * @param mask    the mask
+     * @param optimal whether or not every mask was searched
+     *
+     * @return the result, without a route when even the best mask of a sparse table needs a
+     * rental that is not offered
+     */
+    private tcss343.Result resultOf(long cost, long mask, boolean optimal) {
+        if (sparse && cost >= PENALTY) {
+            return new tcss343.Result(new int[0], CostTable.UNAVAILABLE, optimal);
+        }
+        return new tcss343.Result(sequenceOf(mask), cost, optimal);
+    }
+
+    /**
+     * Builds the sequence of posts a mask stands for.
+     *
+     * @param mask the mask
+     *
+     * @return the sequence of posts
+     */
+    private int[] sequenceOf(long mask) {
+        int[] sequence = new int[Long.bitCount(mask) + 2];
+        int k = 1;
+        for (int b = 0; b < bits; b++) {
+            if ((mask & (1L << b)) != 0) {
+                sequence[k++] = b + 1;
+            }
+        }
+        sequence[k] = n - 1;
+        return sequence;
+    }
+
+    /**
+     * Computes the cost of the sequence a mask stands for from scratch.
+     *
+     * @param mask the mask
+     *
+     * @return the total cost
+     */
+    private long costOf(long mask) {
+        long total = 0;
+        int previous = 0;
+        for (int b = 0; b < bits; b++) {
+            if ((mask & (1L << b)) != 0) {
+                total += costs[previous * n + b + 1];
+                previous = b + 1;
+            }
+        }
+        return total + costs[previous * n + n - 1];
+    }
+
+    /**
+     * Searches every mask whose high bits fall in a range of prefixes.
+     *
+     * @param prefix  the prefix
+     * @param lowBits the number of low bits enumerated below the prefix
+     *
+     * @return the best cost and mask, ties going to the smallest mask
+     */
+    long[] searchPrefix(long prefix, int lowBits) {
+        long mask = prefix << lowBits;
+        long cost = costOf(mask);
+        long bestCost = cost;
+        long bestMask = mask;
+        long steps = 1L << lowBits;
+
+        for (long step = 1; step < steps; step++) {
+            // Consecutive Gray codes differ in the bit at the number of trailing zeros of the step.
+            int b = Long.numberOfTrailingZeros(step);
+            mask ^= 1L << b;
+
+            int post = b + 1;
+            long below = mask & ((1L << b) - 1);
+            long above = mask >>> post;
+            int previous = below == 0 ? 0 : 64 - Long.numberOfLeadingZeros(below);
+            int next = above == 0 ? n - 1 : post + Long.numberOfTrailingZeros(above) + 1;
+
+            // Going through the post replaces the rental from previous to next with two rentals.
+            long delta = costs[previous * n + post] + costs[post * n + next] - costs[previous * n + next];
+            cost += (mask & (1L << b)) != 0 ? delta : -delta;
+
+            if (cost < bestCost || (cost == bestCost && mask < bestMask)) {
+                bestCost = cost;
+                bestMask = mask;
+            }
+        }
+
+        return new long[]{bestCost, bestMask};
+    }
+
+    /**
+     * Fork-join task that splits a range of prefixes in half until a single prefix is left.
+     */
+    private final class SearchTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final int lowBits;
+
+        private SearchTask(long from, long to, int lowBits) {
+            this.from = from;
+            this.to = to;
+            this.lowBits = lowBits;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from == 1) {
+                return searchPrefix(from, lowBits);
+            }
+
+            long middle = (from + to) >>> 1;
+            SearchTask left = new SearchTask(from, middle, lowBits);
+            left.fork();
+            long[] right = new SearchTask(middle, to, lowBits).compute();
+            long[] best = left.join();
+
+            // The left half holds the smaller masks so it wins ties.
+            return right[0] < best[0] ? right : best;
+        }
+    }
+}
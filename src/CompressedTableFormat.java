@@ -0,0 +1,586 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compressed file format for archiving tables, written and read one row at a time.
+ *
+ * Only the strict upper triangle is stored. Each row is delta encoded from left to right and every
+ * delta is written as a zig-zag varint, so the rows of dependent tables, which only ever grow, take
+ * a byte or two per cell. Rows are grouped into blocks of about {@link #BLOCK_CELLS} cells and an
+ * index of where each block starts is written after the last block, so a reader can seek to a row
+ * without decoding the rows before its block. The file starts with a 40 byte little endian header:
+ *
+ * <pre>
+ * int   magic        "RENZ"
+ * short version      1
+ * byte  width        ordinal of {@link CostTable.Width}
+ * byte  mode         ordinal of {@link tcss343.GenerationMode}, -1 when unknown
+ * int   dimension    number of posts
+ * int   flags        FLAG_SEED when the seed is known
+ * long  seed         seed the table was generated with
+ * int   blocks       number of blocks
+ * long  index        byte offset of the block index
+ * int   reserved     0
+ * </pre>
+ *
+ * Each entry of the block index is the first row of the block as an int followed by its byte
+ * offset as a long.
+ */
+public final class CompressedTableFormat {
+
+    /**
+     * Magic number at the start of every compressed table ("RENZ").
+     */
+    public static final int MAGIC = 0x52454E5A;
+
+    /**
+     * Current version of the compressed format.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_BYTES = 40;
+
+    /**
+     * Flag set when the seed in the header is known.
+     */
+    public static final int FLAG_SEED = 1;
+
+    /**
+     * Number of cells after which a new block is started at the next row.
+     */
+    public static final int BLOCK_CELLS = 1 << 16;
+
+    /**
+     * Size of an entry of the block index in bytes.
+     */
+    private static final int INDEX_ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Size of the buffers used to read and write the file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * A varint takes at most 10 bytes for 64 bits.
+     */
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private CompressedTableFormat() {
+    }
+
+    /**
+     * Checks whether a file starts with the compressed table magic number.
+     *
+     * @param file the file
+     *
+     * @return true if the file is a compressed table
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        if (file.length() < HEADER_BYTES) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a table to file in the compressed format.
+     *
+     * @param costTable the table to write
+     * @param file      the target file
+     * @param mode      the mode the table was generated with, or null if unknown
+     * @param seeded    whether or not the seed is known
+     * @param seed      the seed the table was generated with
+     *
+     * @throws IOException if the file cannot be written or the table is sparse
+     */
+    public static void write(CostTable costTable, File file, tcss343.GenerationMode mode, boolean seeded, long seed)
+            throws IOException {
+        // The format has a cell for every rental, so rentals that are not offered have no place in it.
+        if (costTable.isSparse()) {
+            throw new IOException("Sparse tables can only be saved as text: " + file);
+        }
+
+        int n = costTable.size();
+        long[] row = new long[Math.max(n, 1)];
+
+        try (Encoder encoder = new Encoder(file, n, mode, seeded, seed)) {
+            for (int i = 0; i < n - 1; i++) {
+                costTable.readRow(i, i + 1, n, row, 0);
+                encoder.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Decodes a compressed table file into a packed table of the width recorded in the header.
+     *
+     * @param file the file
+     *
+     * @return the table
+     *
+     * @throws IOException if the file cannot be read or is not a valid compressed table
+     */
+    public static PackedCostTable load(File file) throws IOException {
+        try (Decoder decoder = Decoder.open(file)) {
+            int n = decoder.size();
+            PackedCostTable costTable = PackedCostTable.allocate(n, decoder.width());
+            long[] row = new long[Math.max(n, 1)];
+
+            for (int i = 0; decoder.nextRow(row); i++) {
+                for (int k = 0; k < n - i - 1; k++) {
+                    costTable.set(i, i + k + 1, row[k]);
+                }
+            }
+
+            return costTable;
+        }
+    }
+
+    /**
+     * Writes a compressed table one row at a time. The width, block index and header are written
+     * when the encoder is closed, so the rows never have to be held in memory.
+     */
+    public static final class Encoder implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final int n;
+        private final tcss343.GenerationMode mode;
+        private final boolean seeded;
+        private final long seed;
+
+        private int row;
+        private long written;
+        private long maxValue;
+        private long blockCells;
+        private int blocks;
+        private int[] blockRows = new int[16];
+        private long[] blockOffsets = new long[16];
+
+        /**
+         * Constructor that creates the file and takes what is recorded in the header.
+         *
+         * @param file   the target file
+         * @param n      the dimension of the table
+         * @param mode   the mode the table was generated with, or null if unknown
+         * @param seeded whether or not the seed is known
+         * @param seed   the seed the table was generated with
+         *
+         * @throws IOException if the file cannot be created
+         */
+        public Encoder(File file, int n, tcss343.GenerationMode mode, boolean seeded, long seed) throws IOException {
+            if (n < 0) {
+                throw new IllegalArgumentException("Invalid table dimension: " + n);
+            }
+
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.n = n;
+            this.mode = mode;
+            this.seeded = seeded;
+            this.seed = seed;
+            this.written = HEADER_BYTES;
+            // The header is written last, once the width and the index are known.
+            channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * Writes the next row, whose cells are the costs from the row to every later post.
+         *
+         * @param costs the costs, n - row - 1 of them starting at index 0
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public void writeRow(long[] costs) throws IOException {
+            if (row >= n - 1) {
+                throw new IllegalStateException(String.format("All %s rows have been written", Math.max(n - 1, 0)));
+            }
+
+            int count = n - row - 1;
+            if (row == 0 || blockCells >= BLOCK_CELLS) {
+                startBlock();
+            }
+
+            long previous = 0;
+            for (int k = 0; k < count; k++) {
+                long value = costs[k];
+                maxValue = Math.max(maxValue, value);
+
+                if (buffer.remaining() < MAX_VARINT_BYTES) {
+                    drain();
+                }
+
+                // Zig-zag keeps small negative deltas small.
+                long delta = value - previous;
+                long zigzag = (delta << 1) ^ (delta >> 63);
+                while ((zigzag & ~0x7FL) != 0) {
+                    buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+                    zigzag >>>= 7;
+                }
+                buffer.put((byte) zigzag);
+                previous = value;
+            }
+
+            blockCells += count;
+            row += 1;
+        }
+
+        /**
+         * Returns the number of bytes written so far.
+         *
+         * @return the number of bytes
+         */
+        public long bytesWritten() {
+            return written + buffer.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (row < n - 1) {
+                    throw new IOException(String.format("Table closed after %s of %s rows", row, n - 1));
+                }
+
+                drain();
+                long indexOffset = written;
+                ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int b = 0; b < blocks; b++) {
+                    index.putInt(blockRows[b]).putLong(blockOffsets[b]);
+                }
+                index.flip();
+                while (index.hasRemaining()) {
+                    channel.write(index);
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC)
+                        .putShort(VERSION)
+                        .put((byte) CostTable.Width.forMaximum(maxValue).ordinal())
+                        .put((byte) (mode == null ? -1 : mode.ordinal()))
+                        .putInt(n)
+                        .putInt(seeded ? FLAG_SEED : 0)
+                        .putLong(seed)
+                        .putInt(blocks)
+                        .putLong(indexOffset)
+                        .putInt(0);
+                header.flip();
+                channel.write(header, 0);
+            } finally {
+                channel.close();
+            }
+        }
+
+        /**
+         * Records that a block starts at the current row.
+         */
+        private void startBlock() {
+            if (blocks == blockRows.length) {
+                blockRows = java.util.Arrays.copyOf(blockRows, blocks * 2);
+                blockOffsets = java.util.Arrays.copyOf(blockOffsets, blocks * 2);
+            }
+
+            blockRows[blocks] = row;
+            blockOffsets[blocks] = bytesWritten();
+            blocks += 1;
+            blockCells = 0;
+        }
+
+        /**
+         * Writes the buffered bytes to the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a compressed table one row at a time from the start or from any row.
+     */
+    public static final class Decoder implements Closeable {
+
+        private final FileChannel channel;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+        private final int n;
+        private final CostTable.Width width;
+        private final tcss343.GenerationMode mode;
+        private final boolean seeded;
+        private final long seed;
+        private final long indexOffset;
+        private final int[] blockRows;
+        private final long[] blockOffsets;
+
+        private int row;
+        private int position;
+        private int limit;
+        private long filePosition;
+
+        private Decoder(FileChannel channel, int n, CostTable.Width width, tcss343.GenerationMode mode, boolean seeded,
+                        long seed, long indexOffset, int[] blockRows, long[] blockOffsets) {
+            this.channel = channel;
+            this.n = n;
+            this.width = width;
+            this.mode = mode;
+            this.seeded = seeded;
+            this.seed = seed;
+            this.indexOffset = indexOffset;
+            this.blockRows = blockRows;
+            this.blockOffsets = blockOffsets;
+            this.filePosition = HEADER_BYTES;
+        }
+
+        /**
+         * Opens a compressed table file and reads its header and block index.
+         *
+         * @param file the file
+         *
+         * @return a decoder positioned at the first row
+         *
+         * @throws IOException if the file cannot be read or is not a valid compressed table
+         */
+        public static Decoder open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                if (channel.read(header, 0) < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a compressed cost table: " + file);
+                }
+
+                if (header.getShort(4) != VERSION) {
+                    throw new IOException(String.format("Unsupported compressed cost table version %s: %s",
+                            header.getShort(4), file));
+                }
+
+                int widthOrdinal = header.get(6);
+                int modeOrdinal = header.get(7);
+                int n = header.getInt(8);
+                int flags = header.getInt(12);
+                long seed = header.getLong(16);
+                int blocks = header.getInt(24);
+                long indexOffset = header.getLong(28);
+
+                if (widthOrdinal < 0 || widthOrdinal >= CostTable.Width.values().length || n < 0 || blocks < 0
+                        || indexOffset < HEADER_BYTES
+                        || indexOffset + (long) blocks * INDEX_ENTRY_BYTES > channel.size()) {
+                    throw new IOException("Corrupt compressed cost table header: " + file);
+                }
+
+                ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                while (index.hasRemaining() && channel.read(index, indexOffset + index.position()) > 0) {
+                    // Keep reading until the whole index is in.
+                }
+                int[] blockRows = new int[blocks];
+                long[] blockOffsets = new long[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    blockRows[b] = index.getInt(b * INDEX_ENTRY_BYTES);
+                    blockOffsets[b] = index.getLong(b * INDEX_ENTRY_BYTES + Integer.BYTES);
+                }
+
+                CostTable.Width width = CostTable.Width.values()[widthOrdinal];
+                tcss343.GenerationMode mode = modeOrdinal >= 0 && modeOrdinal < tcss343.GenerationMode.values().length
+                        ? tcss343.GenerationMode.values()[modeOrdinal] : null;
+                return new Decoder(channel, n, width, mode, (flags & FLAG_SEED) != 0, seed, indexOffset,
+                        blockRows, blockOffsets);
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Returns the number of posts in the table.
+         *
+         * @return the dimension of the table
+         */
+        public int size() {
+            return n;
+        }
+
+        /**
+         * Returns the narrowest width that holds every value of the table.
+         *
+         * @return the value width
+         */
+        public CostTable.Width width() {
+            return width;
+        }
+
+        /**
+         * Returns the mode the table was generated with.
+         *
+         * @return the generation mode, or null if unknown
+         */
+        public tcss343.GenerationMode mode() {
+            return mode;
+        }
+
+        /**
+         * Returns whether or not the seed the table was generated with is known.
+         *
+         * @return true if the seed is known
+         */
+        public boolean isSeeded() {
+            return seeded;
+        }
+
+        /**
+         * Returns the seed the table was generated with.
+         *
+         * @return the seed, only meaningful if {@link #isSeeded()}
+         */
+        public long seed() {
+            return seed;
+        }
+
+        /**
+         * Returns the number of blocks in the file.
+         *
+         * @return the number of blocks
+         */
+        public int blocks() {
+            return blockRows.length;
+        }
+
+        /**
+         * Returns the row the next call to {@link #nextRow(long[])} decodes.
+         *
+         * @return the next row
+         */
+        public int row() {
+            return row;
+        }
+
+        /**
+         * Moves to a row by jumping to the block that holds it and decoding the rows before it in
+         * that block.
+         *
+         * @param target the row to move to
+         *
+         * @throws IOException if the file cannot be read
+         */
+        public void seek(int target) throws IOException {
+            if (target < 0 || target > Math.max(n - 1, 0)) {
+                throw new IndexOutOfBoundsException(String.format("Row %s is outside a table of %s posts", target, n));
+            }
+
+            // The last block that starts at or before the target.
+            int low = 0;
+            int high = blockRows.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (blockRows[middle] <= target) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            if (blockRows.length > 0 && (target < row || blockRows[low] > row)) {
+                row = blockRows[low];
+                filePosition = blockOffsets[low];
+                position = 0;
+                limit = 0;
+            }
+
+            long[] skipped = new long[Math.max(n, 1)];
+            while (row < target) {
+                nextRow(skipped);
+            }
+        }
+
+        /**
+         * Decodes the next row, the costs from the row to every later post.
+         *
+         * @param costs receives the n - row - 1 costs starting at index 0
+         *
+         * @return false if every row has been decoded
+         *
+         * @throws IOException if the file cannot be read or is corrupt
+         */
+        public boolean nextRow(long[] costs) throws IOException {
+            if (row >= n - 1) {
+                return false;
+            }
+
+            int count = n - row - 1;
+            long previous = 0;
+            for (int k = 0; k < count; k++) {
+                if (limit - position < MAX_VARINT_BYTES) {
+                    fill();
+                }
+
+                long zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (position == limit) {
+                        throw new IOException(String.format("Compressed cost table ended in row %s of %s", row, n - 1));
+                    }
+                    if (shift >= 64) {
+                        throw new IOException(String.format("Corrupt varint in row %s", row));
+                    }
+                    b = buffer[position++];
+                    zigzag |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                costs[k] = previous;
+            }
+
+            row += 1;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Moves the unread bytes to the front of the buffer and reads more after them, never
+         * reading past the block index.
+         *
+         * @throws IOException if the file cannot be read
+         */
+        private void fill() throws IOException {
+            int remaining = limit - position;
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            position = 0;
+            limit = remaining;
+
+            int length = (int) Math.min(buffer.length - limit, indexOffset - filePosition);
+            if (length <= 0) {
+                return;
+            }
+
+            wrapper.limit(limit + length).position(limit);
+            int read;
+            while (wrapper.hasRemaining() && (read = channel.read(wrapper, filePosition)) > 0) {
+                limit += read;
+                filePosition += read;
+            }
+        }
+    }
+}
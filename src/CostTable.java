@@ -0,0 +1,196 @@
+/**
+ * A table of rental costs between posts.
+ *
+ * Only the upper triangle of the table carries a cost (a rental can only be returned at a post
+ * further down the river), the diagonal is always zero and the lower triangle is never read.
+ * Sparse tables may leave rentals of the upper triangle out, which read as {@link #UNAVAILABLE}.
+ */
+public abstract class CostTable {
+
+    /**
+     * Cost of a rental that is not offered. It is larger than any sum of real costs, so solvers
+     * must skip it rather than add it.
+     */
+    public static final long UNAVAILABLE = Long.MAX_VALUE;
+
+    /**
+     * Approximate size of an object header on a 64 bit JVM with compressed references.
+     */
+    private static final long OBJECT_HEADER_BYTES = 12;
+
+    /**
+     * Approximate size of an array header on a 64 bit JVM with compressed references.
+     */
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * Size of a compressed object reference.
+     */
+    private static final long REFERENCE_BYTES = 4;
+
+    /**
+     * Returns the number of posts in the table.
+     *
+     * @return the dimension of the table
+     */
+    public abstract int size();
+
+    /**
+     * Returns the cost of renting at a post and returning at another post.
+     *
+     * @param row    the post the rental starts at
+     * @param column the post the rental is returned at
+     *
+     * @return the cost, 0 when column is not greater than row, or {@link #UNAVAILABLE} when the
+     * rental is not offered
+     */
+    public abstract long get(int row, int column);
+
+    /**
+     * Returns the width of the values stored by this table.
+     *
+     * @return the value width
+     */
+    public abstract Width width();
+
+    /**
+     * Returns the approximate number of heap bytes used by this table.
+     *
+     * @return the footprint in bytes
+     */
+    public abstract long footprintBytes();
+
+    /**
+     * Copies the costs of a row into a buffer. Implementations backed by an array
+     * override this with a bulk copy so hot loops can avoid a call per cell.
+     *
+     * @param row    the row to read
+     * @param from   the first column to copy (inclusive), greater than row
+     * @param to     the last column to copy (exclusive)
+     * @param dest   the buffer to copy into
+     * @param offset the index in dest the first column is written to
+     */
+    public void readRow(int row, int from, int to, long[] dest, int offset) {
+        for (int column = from; column < to; column++) {
+            dest[offset + column - from] = get(row, column);
+        }
+    }
+
+    /**
+     * Returns whether or not some rentals of the upper triangle are not offered. Only then can
+     * {@link #get(int, int)} and {@link #readRow(int, int, int, long[], int)} return
+     * {@link #UNAVAILABLE}.
+     *
+     * @return true for a sparse table
+     */
+    public boolean isSparse() {
+        return false;
+    }
+
+    /**
+     * Returns the number of rentals offered in the upper triangle.
+     *
+     * @return the number of rentals
+     */
+    public long availableCount() {
+        return (long) size() * (size() - 1) / 2;
+    }
+
+    /**
+     * Copies the rentals offered from a post, nearest destination first. Sparse tables override
+     * this so solvers only visit the rentals that exist.
+     *
+     * @param row     the post the rentals start at
+     * @param columns the buffer for the destinations, at least size() - row - 1 long
+     * @param costs   the buffer for the costs, at least size() - row - 1 long
+     *
+     * @return the number of rentals copied
+     */
+    public int readAvailable(int row, int[] columns, long[] costs) {
+        int count = size() - row - 1;
+        readRow(row, row + 1, size(), costs, 0);
+        for (int k = 0; k < count; k++) {
+            columns[k] = row + 1 + k;
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the number of heap bytes the same table would use as a boxed Integer[n][n],
+     * which is how tables used to be stored.
+     *
+     * @param n the dimension of the table
+     *
+     * @return the estimated footprint in bytes
+     */
+    public static long boxedFootprintBytes(int n) {
+        long outer = align(ARRAY_HEADER_BYTES + REFERENCE_BYTES * n);
+        long rows = n * align(ARRAY_HEADER_BYTES + REFERENCE_BYTES * n);
+        // Every populated cell of the upper triangle (including the diagonal) is a boxed Integer.
+        long boxes = ((long) n * (n + 1) / 2) * align(OBJECT_HEADER_BYTES + Integer.BYTES);
+        return outer + rows + boxes;
+    }
+
+    /**
+     * Rounds a size up to the 8 byte object alignment.
+     *
+     * @param bytes the size
+     *
+     * @return the aligned size
+     */
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * The primitive width a table uses to store its values.
+     */
+    public enum Width {
+        SHORT(Short.BYTES, Short.MAX_VALUE),
+        INT(Integer.BYTES, Integer.MAX_VALUE),
+        LONG(Long.BYTES, Long.MAX_VALUE);
+
+        private final int bytes;
+        private final long maxValue;
+
+        Width(int bytes, long maxValue) {
+            this.bytes = bytes;
+            this.maxValue = maxValue;
+        }
+
+        /**
+         * Returns the number of bytes a single value takes.
+         *
+         * @return the number of bytes
+         */
+        public int bytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the largest value this width can hold.
+         *
+         * @return the max value
+         */
+        public long maxValue() {
+            return maxValue;
+        }
+
+        /**
+         * Returns the narrowest width that can hold every value from 0 to maxValue.
+         *
+         * @param maxValue the largest value that will be stored
+         *
+         * @return the narrowest width
+         */
+        public static Width forMaximum(long maxValue) {
+            for (Width width : values()) {
+                if (maxValue <= width.maxValue) {
+                    return width;
+                }
+            }
+
+            return LONG;
+        }
+    }
+}
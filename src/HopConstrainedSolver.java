@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Dynamic programming solver for the cheapest sequence of rentals that uses at most H rentals.
+ *
+ * Layer h holds the cheapest cost of reaching each post with exactly h rentals and is computed
+ * from layer h - 1 alone, so only two layers of costs are kept. The posts of a layer are independent
+ * of each other and are computed in parallel in blocks of columns. Only the predecessor of each post
+ * in each layer is kept for every layer, which is what allows the plan for every budget from 1 to H
+ * to be returned from a single run.
+ */
+public final class HopConstrainedSolver {
+
+    /**
+     * Number of columns computed by a single task.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private HopConstrainedSolver() {
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals for every budget from 1 to maxHops rentals.
+     *
+     * @param costTable the cost chart
+     * @param maxHops   the largest number of rentals allowed
+     *
+     * @return the cheapest sequence for each budget, the sequence at index h - 1 uses at most h rentals
+     */
+    public static List<tcss343.Result> solve(CostTable costTable, int maxHops) {
+        if (maxHops < 1) {
+            throw new IllegalArgumentException("Invalid number of rentals: " + maxHops);
+        }
+
+        int n = costTable.size();
+        // A plan never uses more than n - 1 rentals, so deeper layers would all be unreachable.
+        int layers = Math.min(maxHops, Math.max(n - 1, 0));
+
+        long[] previous = new long[n];
+        long[] current = new long[n];
+        int[][] from = new int[layers][n];
+        long[] costToEnd = new long[layers + 1];
+
+        // Layer 0 is the start itself.
+        Arrays.fill(previous, Long.MAX_VALUE);
+        if (n > 0) {
+            previous[0] = 0;
+        }
+
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int h = 1; h <= layers; h++) {
+            long[] last = previous;
+            long[] next = current;
+            int[] path = from[h - 1];
+            int hops = h;
+
+            IntStream.range(0, blocks).parallel().forEach(block -> relaxBlock(costTable, last, next, path, hops,
+                    block * BLOCK_SIZE, Math.min(block * BLOCK_SIZE + BLOCK_SIZE, n)));
+
+            costToEnd[h] = current[n - 1];
+            previous = current;
+            current = last;
+        }
+
+        // The plan for a budget is the cheapest of the layers up to it, fewer rentals winning ties.
+        List<tcss343.Result> results = new ArrayList<>();
+        int bestLayer = -1;
+        for (int h = 1; h <= maxHops; h++) {
+            if (h <= layers && costToEnd[h] != Long.MAX_VALUE
+                    && (bestLayer == -1 || costToEnd[h] < costToEnd[bestLayer])) {
+                bestLayer = h;
+            }
+
+            results.add(bestLayer == -1 ? trivial(n) : reconstruct(from, bestLayer, n - 1, costToEnd[bestLayer]));
+        }
+
+        return results;
+    }
+
+    /**
+     * Computes a block of columns of a layer from the previous layer.
+     *
+     * @param costTable the cost chart
+     * @param previous  the costs of the previous layer
+     * @param current   the costs of the layer being computed
+     * @param path      the predecessors of the layer being computed
+     * @param hops      the number of rentals of the layer
+     * @param start     the first column of the block
+     * @param end       the column after the last column of the block
+     */
+    private static void relaxBlock(CostTable costTable, long[] previous, long[] current, int[] path, int hops,
+                                   int start, int end) {
+        Arrays.fill(current, start, end, Long.MAX_VALUE);
+        Arrays.fill(path, start, end, -1);
+
+        // Posts before the layer number cannot be reached with that many rentals.
+        int first = Math.max(start, hops);
+        long[] row = new long[end - start];
+        // Rows are read in order so the earliest post wins ties.
+        for (int i = hops - 1; i < end - 1; i++) {
+            int from = Math.max(i + 1, first);
+            if (previous[i] == Long.MAX_VALUE || from >= end) {
+                continue;
+            }
+
+            costTable.readRow(i, from, end, row, 0);
+            long base = previous[i];
+            for (int j = from; j < end; j++) {
+                long cost = base + row[j - from];
+                if (cost < current[j]) {
+                    current[j] = cost;
+                    path[j] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the sequence of a plan by following the predecessors back through the layers.
+     *
+     * @param from  the predecessors of each layer
+     * @param layer the number of rentals of the plan
+     * @param post  the last post
+     * @param cost  the cost of the plan
+     *
+     * @return the sequence of rentals
+     */
+    private static tcss343.Result reconstruct(int[][] from, int layer, int post, long cost) {
+        int[] sequence = new int[layer + 1];
+        for (int h = layer; h > 0; h--) {
+            sequence[h] = post;
+            post = from[h - 1][post];
+        }
+        sequence[0] = post;
+
+        return new tcss343.Result(sequence, cost);
+    }
+
+    /**
+     * Returns the plan of a table with a single post, which needs no rentals.
+     *
+     * @param n the dimension of the table
+     *
+     * @return the plan
+     */
+    private static tcss343.Result trivial(int n) {
+        return new tcss343.Result(n > 0 ? new int[]{0} : new int[0], 0);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * A cost table that is never stored. Every cost is computed when it is read from the seed and
+ * the generation mode, so the table uses a constant amount of memory whatever its dimension.
+ *
+ * The costs are the same as those of {@link tcss343#generateCostTable(int, tcss343.GenerationMode, long)}
+ * with the same seed. Modes where a cell depends on the previous cell in its row (DEPENDENT) are
+ * recomputed from the start of the row, and each thread remembers the last cell it computed so
+ * reading a row from left to right costs a single step per cell.
+ */
+public final class ImplicitCostTable extends CostTable {
+
+    private final int n;
+    private final tcss343.GenerationMode mode;
+    private final long seed;
+    private final Width width;
+
+    /**
+     * The last cell computed by each thread as {row, column, value}.
+     */
+    private final ThreadLocal<long[]> cursor = ThreadLocal.withInitial(() -> new long[]{-1, -1, 0});
+
+    /**
+     * Constructor that takes the dimension, generation mode and seed of the table.
+     *
+     * @param n    the dimension
+     * @param mode the generation mode
+     * @param seed the seed
+     */
+    public ImplicitCostTable(int n, tcss343.GenerationMode mode, long seed) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid table dimension: " + n);
+        }
+
+        this.n = n;
+        this.mode = mode;
+        this.seed = seed;
+        this.width = Width.forMaximum(mode.maxValue(n));
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public long get(int row, int column) {
+        if (column <= row) {
+            return 0;
+        }
+
+        if (!mode.dependsOnPrevious()) {
+            return mode.nextValue(seed, row, column, 0);
+        }
+
+        // Continue from the last cell this thread computed if it is earlier in the same row.
+        long[] last = cursor.get();
+        int start = row;
+        long value = 0;
+        if (last[0] == row && last[1] <= column) {
+            start = (int) last[1];
+            value = last[2];
+        }
+
+        for (int k = start + 1; k <= column; k++) {
+            value = mode.nextValue(seed, row, k, value);
+        }
+
+        last[0] = row;
+        last[1] = column;
+        last[2] = value;
+        return value;
+    }
+
+    @Override
+    public void readRow(int row, int from, int to, long[] dest, int offset) {
+        if (to <= from) {
+            return;
+        }
+
+        long value = get(row, from);
+        dest[offset] = value;
+        for (int column = from + 1; column < to; column++) {
+            value = mode.nextValue(seed, row, column, value);
+            dest[offset + column - from] = value;
+        }
+
+        if (mode.dependsOnPrevious()) {
+            long[] last = cursor.get();
+            last[1] = to - 1;
+            last[2] = value;
+        }
+    }
+
+    @Override
+    public Width width() {
+        return width;
+    }
+
+    @Override
+    public long footprintBytes() {
+        return align(12 + 4 + 4 + 8 + 4 + 4);
+    }
+
+    /**
+     * Returns the mode the table is generated with.
+     *
+     * @return the generation mode
+     */
+    public tcss343.GenerationMode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns the seed the table is generated with.
+     *
+     * @return the seed
+     */
+    public long seed() {
+        return seed;
+    }
+}
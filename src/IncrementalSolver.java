@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * Dynamic programming solver that keeps its minCost and path arrays between calls so a table can
+ * be re-solved after a few prices change without starting over.
+ *
+ * Posts before the first changed column keep their minimum cost. From there on a column is only
+ * recomputed in full when one of its own prices changed or when the post its cheapest plan came from
+ * got more expensive. Otherwise only the posts that got cheaper are offered to it as new candidates.
+ * Once every changed column has been passed and no minimum cost has changed the rest of the table is
+ * left alone.
+ */
+public final class IncrementalSolver {
+
+    private PackedCostTable costTable;
+    private final int n;
+    private final long[] minCost;
+    private final int[] path;
+
+    /**
+     * Posts whose minimum cost changed during the current update, in increasing order.
+     */
+    private final int[] changed;
+
+    /**
+     * Whether the minimum cost of a post went up during the current update, cleared afterwards.
+     */
+    private final boolean[] raised;
+
+    /**
+     * Constructor that solves a table. Packed tables are used directly and price updates are
+     * written to them, any other table is copied first.
+     *
+     * @param costTable the cost chart
+     */
+    public IncrementalSolver(CostTable costTable) {
+        this.costTable = costTable instanceof PackedCostTable ? (PackedCostTable) costTable
+                : PackedCostTable.copyOf(costTable, costTable.width());
+        this.n = costTable.size();
+        this.minCost = new long[n];
+        this.path = new int[n];
+        this.changed = new int[n];
+        this.raised = new boolean[n];
+
+        Arrays.fill(minCost, Long.MAX_VALUE);
+        if (n > 0) {
+            minCost[0] = 0;
+            path[0] = -1;
+        }
+
+        long[] row = new long[n];
+        for (int i = 0; i < n - 1; i++) {
+            this.costTable.readRow(i, i + 1, n, row, 0);
+            for (int j = i + 1; j < n; j++) {
+                long cost = minCost[i] + row[j - i - 1];
+                if (cost < minCost[j]) {
+                    minCost[j] = cost;
+                    path[j] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cheapest sequence of rentals for the current prices.
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public tcss343.Result result() {
+        return tcss343.reconstructResult(minCost, path);
+    }
+
+    /**
+     * Returns the table with the current prices.
+     *
+     * @return the cost chart
+     */
+    public CostTable costTable() {
+        return costTable;
+    }
+
+    /**
+     * Changes a single price and re-solves the table.
+     *
+     * @param row    the post the rental starts at
+     * @param column the post the rental is returned at
+     * @param value  the new price
+     *
+     * @return the cheapest sequence of rentals for the new prices
+     */
+    public tcss343.Result updateCost(int row, int column, long value) {
+        return updateCosts(new int[]{row}, new int[]{column}, new long[]{value});
+    }
+
+    /**
+     * Changes a batch of prices and re-solves the table.
+     *
+     * @param rows    the posts the rentals start at
+     * @param columns the posts the rentals are returned at
+     * @param values  the new prices
+     *
+     * @return the cheapest sequence of rentals for the new prices
+     */
+    public tcss343.Result updateCosts(int[] rows, int[] columns, long[] values) {
+        if (rows.length != columns.length || rows.length != values.length) {
+            throw new IllegalArgumentException("Every update needs a row, a column and a value");
+        }
+
+        for (int k = 0; k < rows.length; k++) {
+            if (rows[k] < 0 || columns[k] >= n || columns[k] <= rows[k]) {
+                throw new IllegalArgumentException(String.format("Invalid cell (%s, %s)", rows[k], columns[k]));
+            }
+
+            if (values[k] > costTable.width().maxValue()) {
+                costTable = costTable.widen(values[k]);
+            }
+            costTable.set(rows[k], columns[k], values[k]);
+        }
+
+        if (columns.length == 0) {
+            return result();
+        }
+
+        // The columns whose own prices changed, in increasing order without duplicates.
+        int[] touched = columns.clone();
+        Arrays.sort(touched);
+        int next = 0;
+        int count = 0;
+
+        for (int k = touched[0]; k < n; k++) {
+            boolean full = false;
+            while (next < touched.length && touched[next] == k) {
+                full = true;
+                next += 1;
+            }
+
+            // A column whose cheapest plan came through a post that got more expensive starts over.
+            if (!full && raised[path[k]]) {
+                full = true;
+            }
+
+            long previous = minCost[k];
+            if (full) {
+                recomputeColumn(k);
+            } else {
+                for (int c = 0; c < count; c++) {
+                    int post = changed[c];
+                    if (raised[post]) {
+                        continue;
+                    }
+
+                    long cost = minCost[post] + costTable.get(post, k);
+                    if (cost < minCost[k] || (cost == minCost[k] && post < path[k])) {
+                        minCost[k] = cost;
+                        path[k] = post;
+                    }
+                }
+            }
+
+            if (minCost[k] != previous) {
+                raised[k] = minCost[k] > previous;
+                changed[count++] = k;
+            }
+
+            // Nothing left that could change a later column.
+            if (count == 0 && next == touched.length) {
+                break;
+            }
+        }
+
+        for (int c = 0; c < count; c++) {
+            raised[changed[c]] = false;
+        }
+
+        return result();
+    }
+
+    /**
+     * Recomputes the minimum cost of a column from every post before it.
+     *
+     * @param column the column
+     */
+    private void recomputeColumn(int column) {
+        long best = Long.MAX_VALUE;
+        int from = -1;
+        for (int i = 0; i < column; i++) {
+            long cost = minCost[i] + costTable.get(i, column);
+            if (cost < best) {
+                best = cost;
+                from = i;
+            }
+        }
+
+        minCost[column] = best;
+        path[column] = from;
+    }
+}
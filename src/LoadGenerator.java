@@ -0,0 +1,197 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends solve requests to a local {@link SolverService} from several connections at once and
+ * measures the latency and throughput the client sees.
+ *
+ * Each request asks for the tables in turn, either one per GET or a batch of them per POST, so
+ * the cache of the service is hit after the first round.
+ */
+public final class LoadGenerator {
+
+    private final int port;
+    private final List<String> files;
+    private final String algorithm;
+    private final int batchSize;
+
+    private long[] latencies = new long[0];
+    private long elapsedNanos;
+    private long errors;
+
+    /**
+     * Constructor that takes the service and what to ask it.
+     *
+     * @param port      the port of the service on the loopback interface
+     * @param files     the table files to solve
+     * @param algorithm dynamic, bruteforce or divideconquer
+     * @param batchSize the number of tables per request, 1 for a GET per table
+     */
+    public LoadGenerator(int port, List<String> files, String algorithm, int batchSize) {
+        if (files.isEmpty() || batchSize < 1) {
+            throw new IllegalArgumentException("Expected at least one file and a batch size of at least 1");
+        }
+
+        this.port = port;
+        this.files = files;
+        this.algorithm = algorithm;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sends requests until the given number have been answered.
+     *
+     * @param requests    the number of requests
+     * @param concurrency the number of requests in flight at once
+     *
+     * @throws InterruptedException if interrupted while waiting for the requests
+     */
+    public void run(int requests, int concurrency) throws InterruptedException {
+        long[] samples = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong failed = new AtomicLong();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        try {
+            Future<?>[] workers = new Future<?>[concurrency];
+            for (int w = 0; w < concurrency; w++) {
+                workers[w] = clients.submit(() -> {
+                    int k;
+                    while ((k = next.getAndIncrement()) < requests) {
+                        long begin = System.nanoTime();
+                        try {
+                            send(k);
+                        } catch (IOException ex) {
+                            failed.incrementAndGet();
+                        }
+                        samples[k] = System.nanoTime() - begin;
+                    }
+                });
+            }
+
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (java.util.concurrent.ExecutionException ex) {
+                    failed.incrementAndGet();
+                }
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        errors = failed.get();
+        Arrays.sort(samples);
+        latencies = samples;
+    }
+
+    /**
+     * Returns the latency at a percentile of the last run.
+     *
+     * @param fraction the percentile from 0 to 1
+     *
+     * @return the latency in nanoseconds
+     */
+    public double percentileNanos(double fraction) {
+        return SolverService.percentile(latencies, fraction);
+    }
+
+    /**
+     * Returns the number of requests answered per second in the last run.
+     *
+     * @return the throughput
+     */
+    public double requestsPerSecond() {
+        return elapsedNanos == 0 ? 0 : latencies.length / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns the number of requests of the last run that failed or answered with an error.
+     *
+     * @return the number of errors
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * Fetches the statistics of the service.
+     *
+     * @return the statistics as JSON
+     *
+     * @throws IOException if the service cannot be reached
+     */
+    public String stats() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(String.format("http://127.0.0.1:%s/stats", port)).openConnection();
+        return new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Sends one request and reads the whole response.
+     *
+     * @param k the number of the request, which picks the tables
+     *
+     * @throws IOException if the request fails or any table answered with an error
+     */
+    private void send(int k) throws IOException {
+        HttpURLConnection connection;
+        if (batchSize == 1) {
+            String file = files.get(k % files.size());
+            connection = (HttpURLConnection) new URL(String.format("http://127.0.0.1:%s/solve?file=%s&algorithm=%s", port,
+                    URLEncoder.encode(file, StandardCharsets.UTF_8), algorithm)).openConnection();
+        } else {
+            StringBuilder body = new StringBuilder();
+            for (int b = 0; b < batchSize; b++) {
+                body.append(files.get((k * batchSize + b) % files.size())).append(' ').append(algorithm).append('\n');
+            }
+
+            connection = (HttpURLConnection) new URL(String.format("http://127.0.0.1:%s/solve", port)).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        if (connection.getResponseCode() != 200) {
+            readAll(connection.getErrorStream());
+            throw new IOException("Service answered " + connection.getResponseCode());
+        }
+
+        String response = new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+        if (response.contains("\"error\":")) {
+            throw new IOException("Service could not solve a table");
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
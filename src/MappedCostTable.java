@@ -0,0 +1,294 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A cost table read directly from a memory mapped binary file.
+ *
+ * The binary format stores a 24 byte little endian header followed by the strict upper triangle
+ * in the same row major packed order as {@link PackedCostTable}:
+ *
+ * <pre>
+ * int   magic       "RENT"
+ * short version     1
+ * byte  width       ordinal of {@link CostTable.Width}
+ * byte  mode        ordinal of {@link tcss343.GenerationMode}, -1 when unknown
+ * int   dimension   number of posts
+ * int   flags       FLAG_SEED when the seed is known
+ * long  seed        seed the table was generated with
+ * </pre>
+ *
+ * Cells are read straight out of the mapping so opening a table does not parse anything.
+ */
+public final class MappedCostTable extends CostTable {
+
+    /**
+     * Magic number at the start of every binary table ("RENT").
+     */
+    public static final int MAGIC = 0x52454E54;
+
+    /**
+     * Current version of the binary format.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Size of the header in bytes. It is a multiple of 8 so cells of every width stay aligned.
+     */
+    public static final int HEADER_BYTES = 24;
+
+    /**
+     * Flag set when the seed in the header is known.
+     */
+    public static final int FLAG_SEED = 1;
+
+    /**
+     * Each mapping covers at most 2^SEGMENT_SHIFT bytes because a single buffer is limited to 2GB.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+
+    private final ByteBuffer[] segments;
+    private final int n;
+    private final Width width;
+    private final int shift;
+    private final tcss343.GenerationMode mode;
+    private final boolean seeded;
+    private final long seed;
+
+    private MappedCostTable(ByteBuffer[] segments, int n, Width width, tcss343.GenerationMode mode,
+                            boolean seeded, long seed) {
+        this.segments = segments;
+        this.n = n;
+        this.width = width;
+        this.shift = Integer.numberOfTrailingZeros(width.bytes());
+        this.mode = mode;
+        this.seeded = seeded;
+        this.seed = seed;
+    }
+
+    /**
+     * Checks whether a file starts with the binary table magic number.
+     *
+     * @param file the file
+     *
+     * @return true if the file is a binary table
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isBinary(File file) throws IOException {
+        if (file.length() < HEADER_BYTES) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a binary table file.
+     *
+     * @param file the file
+     *
+     * @return the mapped table
+     *
+     * @throws IOException if the file cannot be read or is not a valid binary table
+     */
+    public static MappedCostTable open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary cost table: " + file);
+            }
+
+            if (header.getShort(4) != VERSION) {
+                throw new IOException(String.format("Unsupported binary cost table version %s: %s", header.getShort(4), file));
+            }
+
+            int widthOrdinal = header.get(6);
+            int modeOrdinal = header.get(7);
+            int n = header.getInt(8);
+            int flags = header.getInt(12);
+            long seed = header.getLong(16);
+
+            if (widthOrdinal < 0 || widthOrdinal >= Width.values().length || n < 0) {
+                throw new IOException("Corrupt binary cost table header: " + file);
+            }
+
+            Width width = Width.values()[widthOrdinal];
+            tcss343.GenerationMode mode = modeOrdinal >= 0 && modeOrdinal < tcss343.GenerationMode.values().length
+                    ? tcss343.GenerationMode.values()[modeOrdinal] : null;
+
+            long size = HEADER_BYTES + PackedCostTable.cellCount(n) * width.bytes();
+            if (channel.size() < size) {
+                throw new IOException(String.format("Binary cost table is truncated, expected %s bytes: %s", size, file));
+            }
+
+            int count = (int) ((size + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+            ByteBuffer[] segments = new ByteBuffer[count];
+            for (int k = 0; k < count; k++) {
+                long start = (long) k << SEGMENT_SHIFT;
+                long length = Math.min(1L << SEGMENT_SHIFT, size - start);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segments[k] = segment.order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new MappedCostTable(segments, n, width, mode, (flags & FLAG_SEED) != 0, seed);
+        }
+    }
+
+    /**
+     * Writes a table to file in the binary format.
+     *
+     * @param costTable the table to write
+     * @param file      the target file
+     * @param mode      the mode the table was generated with, or null if unknown
+     * @param seeded    whether or not the seed is known
+     * @param seed      the seed the table was generated with
+     *
+     * @throws IOException if the file cannot be written or the table is sparse
+     */
+    public static void write(CostTable costTable, File file, tcss343.GenerationMode mode, boolean seeded, long seed)
+            throws IOException {
+        // The format has a cell for every rental, so rentals that are not offered have no place in it.
+        if (costTable.isSparse()) {
+            throw new IOException("Sparse tables can only be saved as text: " + file);
+        }
+
+        int n = costTable.size();
+        Width width = costTable.width();
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .put((byte) width.ordinal())
+                    .put((byte) (mode == null ? -1 : mode.ordinal()))
+                    .putInt(n)
+                    .putInt(seeded ? FLAG_SEED : 0)
+                    .putLong(seed);
+            out.write(header.array());
+
+            long[] row = new long[n];
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(n, 1) * width.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < n - 1; i++) {
+                costTable.readRow(i, i + 1, n, row, 0);
+                buffer.clear();
+                for (int k = 0; k < n - i - 1; k++) {
+                    switch (width) {
+                        case SHORT:
+                            buffer.putShort((short) row[k]);
+                            break;
+                        case INT:
+                            buffer.putInt((int) row[k]);
+                            break;
+                        default:
+                            buffer.putLong(row[k]);
+                            break;
+                    }
+                }
+
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        }
+    }
+
+    /**
+     * Returns the byte offset of a cell in the file.
+     *
+     * @param row    the row, less than column
+     * @param column the column
+     *
+     * @return the byte offset
+     */
+    private long offset(int row, int column) {
+        long index = PackedCostTable.rowOffset(n, row) + (long) (column - row - 1);
+        return HEADER_BYTES + (index << shift);
+    }
+
+    /**
+     * Reads the value at a byte offset in the file.
+     *
+     * @param offset the byte offset
+     *
+     * @return the value
+     */
+    private long read(long offset) {
+        ByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+        switch (width) {
+            case SHORT:
+                return segment.getShort(position);
+            case INT:
+                return segment.getInt(position);
+            default:
+                return segment.getLong(position);
+        }
+    }
+
+    @Override
+    public long get(int row, int column) {
+        return column > row ? read(offset(row, column)) : 0;
+    }
+
+    @Override
+    public void readRow(int row, int from, int to, long[] dest, int offset) {
+        long position = offset(row, from);
+        for (int k = 0; k < to - from; k++) {
+            dest[offset + k] = read(position);
+            position += width.bytes();
+        }
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public Width width() {
+        return width;
+    }
+
+    @Override
+    public long footprintBytes() {
+        // The cells live in the page cache, only the buffers themselves are on the heap.
+        return align(16 + 4L * segments.length) + segments.length * 64L;
+    }
+
+    /**
+     * Returns the mode the table was generated with.
+     *
+     * @return the generation mode, or null if unknown
+     */
+    public tcss343.GenerationMode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns whether or not the seed the table was generated with is known.
+     *
+     * @return true if the seed is known
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Returns the seed the table was generated with.
+     *
+     * @return the seed, only meaningful if {@link #isSeeded()}
+     */
+    public long seed() {
+        return seed;
+    }
+}
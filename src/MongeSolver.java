@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * Dynamic programming solver for tables that satisfy the Monge (quadrangle) inequality
+ *
+ * <pre>
+ * cost(a, c) + cost(b, d) &lt;= cost(a, d) + cost(b, c)   for a &lt; b &lt; c &lt; d
+ * </pre>
+ *
+ * On such tables, once a later post is a strictly cheaper predecessor than an earlier post for some
+ * destination, it stays strictly cheaper for every destination after it. The candidates can then be
+ * kept in a deque where each one owns a contiguous range of destinations, and the point where a new
+ * candidate takes over is found with a binary search, solving the table in O(n log n) lookups instead
+ * of O(n^2). Tables that fail the check are solved with the standard dynamic programming algorithm.
+ *
+ * A table that breaks the inequality in a single cell can give a wrong answer, so the full table is
+ * always checked before the fast path is used. The check reads every cell once without relaxing
+ * anything, and {@link #solve(CostTable)} runs it only after a strided sample passes, which rejects
+ * unstructured tables after a few cells.
+ */
+public final class MongeSolver {
+
+    /**
+     * Number of rows the sample check reads.
+     */
+    private static final int SAMPLE_ROWS = 32;
+
+    /**
+     * Number of cells the sample check reads from each row.
+     */
+    private static final int SAMPLE_CELLS = 2048;
+
+    private MongeSolver() {
+    }
+
+    /**
+     * Checks whether a table satisfies the Monge inequality. It is enough to check every pair of
+     * adjacent rows and columns inside the upper triangle, the inequality for wider rectangles is
+     * the sum of the adjacent ones. The check stops at the first violation so unstructured tables
+     * are rejected almost immediately.
+     *
+     * @param costTable the cost chart
+     *
+     * @return true if the table is Monge
+     */
+    public static boolean isMonge(CostTable costTable) {
+        int n = costTable.size();
+        long[] upper = new long[n];
+        long[] lower = new long[n];
+
+        for (int i = 0; i + 2 < n; i++) {
+            // upper[k] holds cost(i, i + 2 + k) and lower[k] holds cost(i + 1, i + 2 + k).
+            costTable.readRow(i, i + 2, n, upper, 0);
+            costTable.readRow(i + 1, i + 2, n, lower, 0);
+
+            for (int k = 0; k + 1 < n - i - 2; k++) {
+                if (upper[k] + lower[k + 1] > upper[k + 1] + lower[k]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the Monge inequality on a sample of the table, the adjacent cells at the start of
+     * evenly spaced rows. The sample reads O(1) cells however large the table is, so unlike
+     * {@link #isMonge(CostTable)} it can only prove that a table is not Monge.
+     *
+     * @param costTable the cost chart
+     *
+     * @return false if the sample breaks the inequality
+     */
+    public static boolean isLikelyMonge(CostTable costTable) {
+        int n = costTable.size();
+        long[] upper = new long[Math.min(SAMPLE_CELLS, n)];
+        long[] lower = new long[upper.length];
+
+        for (int i = 0; i + 2 < n; i += Math.max((n - 2) / SAMPLE_ROWS, 1)) {
+            int to = Math.min(n, i + 2 + upper.length);
+            costTable.readRow(i, i + 2, to, upper, 0);
+            costTable.readRow(i + 1, i + 2, to, lower, 0);
+
+            for (int k = 0; k + 1 < to - i - 2; k++) {
+                if (upper[k] + lower[k + 1] > upper[k + 1] + lower[k]) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals, using the O(n log n) algorithm if the table is
+     * Monge and the standard dynamic programming algorithm otherwise.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public static tcss343.Result solve(CostTable costTable) {
+        return isLikelyMonge(costTable) && isMonge(costTable)
+                ? solveMonge(costTable) : tcss343.findCheapestRentalSequenceDynamic(costTable);
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals in a table that is known to be Monge. The result on
+     * any other table is not guaranteed to be the cheapest.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public static tcss343.Result solveMonge(CostTable costTable) {
+        int n = costTable.size();
+        long[] minCost = new long[n];
+        int[] path = new int[n];
+        Arrays.fill(minCost, Long.MAX_VALUE);
+        path[0] = -1;
+        minCost[0] = 0;
+
+        // The deque of candidates and the first destination each of them owns.
+        int[] candidates = new int[n];
+        int[] starts = new int[n];
+        int head = 0;
+        int tail = 0;
+        candidates[tail] = 0;
+        starts[tail] = 1;
+        tail += 1;
+
+        for (int j = 1; j < n; j++) {
+            // Drop the front candidate once the next one owns this destination.
+            while (tail - head > 1 && starts[head + 1] <= j) {
+                head += 1;
+            }
+
+            int i = candidates[head];
+            minCost[j] = minCost[i] + costTable.get(i, j);
+            path[j] = i;
+
+            if (j == n - 1) {
+                break;
+            }
+
+            // Candidates j beats from the start of their range are never needed again.
+            while (tail > head && beats(costTable, minCost, j, candidates[tail - 1], Math.max(starts[tail - 1], j + 1))) {
+                tail -= 1;
+            }
+
+            if (tail == head) {
+                candidates[tail] = j;
+                starts[tail] = j + 1;
+                tail += 1;
+                continue;
+            }
+
+            // Find the first destination where j beats the last candidate, if there is one.
+            int previous = candidates[tail - 1];
+            int low = Math.max(starts[tail - 1], j + 1) + 1;
+            int high = n;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (beats(costTable, minCost, j, previous, middle)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+
+            if (low < n) {
+                candidates[tail] = j;
+                starts[tail] = low;
+                tail += 1;
+            }
+        }
+
+        return tcss343.reconstructResult(minCost, path);
+    }
+
+    /**
+     * Checks whether a later candidate is strictly cheaper than an earlier one for a destination.
+     * Ties go to the earlier candidate, which keeps the path the same as the standard algorithm.
+     *
+     * @param costTable   the cost chart
+     * @param minCost     the minimum cost to reach each post
+     * @param later       the later candidate
+     * @param earlier     the earlier candidate
+     * @param destination the destination
+     *
+     * @return true if the later candidate is strictly cheaper
+     */
+    private static boolean beats(CostTable costTable, long[] minCost, int later, int earlier, int destination) {
+        return minCost[later] + costTable.get(later, destination) < minCost[earlier] + costTable.get(earlier, destination);
+    }
+}
@@ -0,0 +1,599 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Dynamic programming solver for tables stored on disk that are too large to load.
+ *
+ * The table is processed in square tiles of rows and columns. Row tiles are taken in order and the
+ * tiles of a row tile are taken left to right, so by the time a row tile is reached the minimum cost
+ * of every post in it only waits on the rows of the tile itself, which are relaxed in order inside the
+ * tile on the diagonal. Each tile is read exactly once and only the minCost and path arrays stay
+ * resident, everything read from the file passes through a bounded pool of fixed size pages.
+ *
+ * Binary tables are read at the offset of each cell. Text tables are indexed once to find where each
+ * row starts and then every row keeps a parse cursor, the byte position and column it stopped at, so
+ * reading the next tile of a row carries on from the cursor instead of parsing the row again. "NA"
+ * after the diagonal of a text table is a rental that is not offered and is skipped.
+ *
+ * The rows of a row tile are next to each other in both formats, so a pool that holds every page a row
+ * tile touches reads the file about once. Row tiles are cut to fit the pool for that reason, while the
+ * columns of a tile stay at the configured size.
+ */
+public final class OutOfCoreSolver {
+
+    /**
+     * Default number of rows and columns in a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 4096;
+
+    /**
+     * Default memory budget of the buffer pool.
+     */
+    public static final long DEFAULT_POOL_BYTES = 64L << 20;
+
+    /**
+     * Pages of the buffer pool cover 2^PAGE_SHIFT bytes of the file. Pages are a multiple of 8
+     * bytes so the cells of a binary table never straddle two pages.
+     */
+    private static final int PAGE_SHIFT = 14;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private final int tileSize;
+    private final long poolBytes;
+
+    private int posts;
+    private long tiles;
+    private long bytesRead;
+    private long fileBytes;
+    private long pageHits;
+    private long pageMisses;
+
+    /**
+     * Constructor that uses the default tile size and buffer pool budget.
+     */
+    public OutOfCoreSolver() {
+        this(DEFAULT_TILE_SIZE, DEFAULT_POOL_BYTES);
+    }
+
+    /**
+     * Constructor that takes the tile size and the memory budget of the buffer pool.
+     *
+     * @param tileSize  the number of rows and columns in a tile
+     * @param poolBytes the number of bytes the buffer pool may use
+     */
+    public OutOfCoreSolver(int tileSize, long poolBytes) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+
+        this.tileSize = tileSize;
+        this.poolBytes = poolBytes;
+    }
+
+    /**
+     * Checks whether a table file can be loaded into the heap. Binary tables are memory mapped
+     * so they always can, compressed tables need every cell at the width in their header and text
+     * tables need at least two bytes for every cell of the upper triangle.
+     *
+     * @param file the table file
+     *
+     * @return false if the table is sure not to fit the heap
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean fitsInMemory(File file) throws IOException {
+        if (MappedCostTable.isBinary(file)) {
+            return true;
+        }
+
+        if (CompressedTableFormat.isCompressed(file)) {
+            try (CompressedTableFormat.Decoder decoder = CompressedTableFormat.Decoder.open(file)) {
+                return PackedCostTable.cellCount(decoder.size()) * decoder.width().bytes() < Runtime.getRuntime().maxMemory();
+            }
+        }
+
+        int n = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            int c;
+            while ((c = br.read()) != -1 && c != '\n') {
+                if (c == '\t') {
+                    n += 1;
+                }
+            }
+            n += 1;
+        }
+
+        return PackedCostTable.cellCount(n) * Short.BYTES < Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals in a table file.
+     *
+     * @param file the table file, binary or tab separated text
+     *
+     * @return the cheapest sequence of rentals
+     *
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public tcss343.Result solve(File file) throws IOException {
+        posts = 0;
+        tiles = 0;
+        pageHits = 0;
+        pageMisses = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            fileBytes = channel.size();
+            // The pool never takes more than a quarter of the heap so the budget cannot run the solver out of memory.
+            long budget = Math.min(poolBytes, Runtime.getRuntime().maxMemory() / 4);
+            BufferPool pool = new BufferPool(channel, Math.max(budget >> PAGE_SHIFT, 1));
+            RowSource source = MappedCostTable.isBinary(file) ? new BinarySource(pool, file) : new TextSource(pool, file);
+            posts = source.size();
+
+            // A row of a tile touches the pages its columns span plus one for where they start in a page.
+            long pagesPerRow = (long) Math.ceil(tileSize * source.bytesPerCell() / PAGE_SIZE) + 1;
+            int rowsPerTile = (int) Math.max(Math.min(tileSize, pool.capacity / pagesPerRow), 1);
+
+            try {
+                return solve(source, rowsPerTile);
+            } finally {
+                bytesRead = pool.bytesRead + source.indexBytes();
+                pageHits = pool.hits;
+                pageMisses = pool.misses;
+            }
+        }
+    }
+
+    /**
+     * Runs the tiled dynamic programming algorithm over a table.
+     *
+     * @param source      the rows of the table
+     * @param rowsPerTile the number of rows in a tile
+     *
+     * @return the cheapest sequence of rentals
+     *
+     * @throws IOException if the table cannot be read
+     */
+    private tcss343.Result solve(RowSource source, int rowsPerTile) throws IOException {
+        int n = source.size();
+        if (n == 0) {
+            throw new IOException("Table has no posts");
+        }
+
+        long[] minCost = new long[n];
+        int[] path = new int[n];
+        long[] row = new long[Math.min(tileSize, n)];
+        Arrays.fill(minCost, Long.MAX_VALUE);
+        minCost[0] = 0;
+        path[0] = -1;
+
+        for (int rowStart = 0; rowStart < n - 1; rowStart += rowsPerTile) {
+            int rowEnd = Math.min(rowStart + rowsPerTile, n - 1);
+
+            for (int columnStart = rowStart; columnStart < n; columnStart += tileSize) {
+                int columnEnd = Math.min(columnStart + tileSize, n);
+                tiles += 1;
+
+                // Rows are relaxed in order so the earliest post wins ties, and on the diagonal
+                // each row is final by the time it is reached.
+                for (int i = rowStart; i < rowEnd; i++) {
+                    int from = Math.max(columnStart, i + 1);
+                    // A post no offered rental reaches relaxes nothing, the cursor skips its cells later.
+                    if (from >= columnEnd || minCost[i] == Long.MAX_VALUE) {
+                        continue;
+                    }
+
+                    source.readRow(i, from, columnEnd, row);
+                    long base = minCost[i];
+                    for (int j = from; j < columnEnd; j++) {
+                        // Rentals that are not offered are skipped.
+                        if (row[j - from] == CostTable.UNAVAILABLE) {
+                            continue;
+                        }
+
+                        long cost = base + row[j - from];
+                        if (cost < minCost[j]) {
+                            minCost[j] = cost;
+                            path[j] = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        return tcss343.reconstructResult(minCost, path);
+    }
+
+    /**
+     * Returns the number of posts of the table of the last solve.
+     *
+     * @return the number of posts
+     */
+    public int posts() {
+        return posts;
+    }
+
+    /**
+     * Returns the number of tiles read by the last solve.
+     *
+     * @return the number of tiles
+     */
+    public long tiles() {
+        return tiles;
+    }
+
+    /**
+     * Returns the number of bytes read from the file by the last solve, including the index of a text table.
+     *
+     * @return the number of bytes
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the size of the file solved last.
+     *
+     * @return the number of bytes
+     */
+    public long fileBytes() {
+        return fileBytes;
+    }
+
+    /**
+     * Returns the fraction of page requests of the last solve that were served by the buffer pool.
+     *
+     * @return the hit rate from 0 to 1
+     */
+    public double hitRate() {
+        long total = pageHits + pageMisses;
+        return total == 0 ? 0 : (double) pageHits / total;
+    }
+
+    /**
+     * Reads segments of the rows of a table. The columns of a row are always read left to right.
+     */
+    private interface RowSource {
+
+        /**
+         * Returns the number of posts in the table.
+         *
+         * @return the dimension
+         */
+        int size();
+
+        /**
+         * Reads the costs of a row for a range of columns.
+         *
+         * @param row  the row
+         * @param from the first column, greater than row
+         * @param to   the column after the last column
+         * @param dest the array to read into from index 0
+         *
+         * @throws IOException if the row cannot be read
+         */
+        void readRow(int row, int from, int to, long[] dest) throws IOException;
+
+        /**
+         * Returns the average number of bytes a cell takes in the file.
+         *
+         * @return the number of bytes
+         */
+        double bytesPerCell();
+
+        /**
+         * Returns the number of bytes read outside the buffer pool to index the table.
+         *
+         * @return the number of bytes
+         */
+        long indexBytes();
+    }
+
+    /**
+     * Rows of a binary table, read at the offset of each cell.
+     */
+    private static final class BinarySource implements RowSource {
+
+        private final BufferPool pool;
+        private final int n;
+        private final CostTable.Width width;
+
+        private BinarySource(BufferPool pool, File file) throws IOException {
+            this.pool = pool;
+
+            ByteBuffer header = pool.page(0);
+            if (pool.size < MappedCostTable.HEADER_BYTES || header.getInt(0) != MappedCostTable.MAGIC
+                    || header.getShort(4) != MappedCostTable.VERSION) {
+                throw new IOException("Not a supported binary cost table: " + file);
+            }
+
+            int widthOrdinal = header.get(6);
+            this.n = header.getInt(8);
+            if (widthOrdinal < 0 || widthOrdinal >= CostTable.Width.values().length || n < 0) {
+                throw new IOException("Corrupt binary cost table header: " + file);
+            }
+            this.width = CostTable.Width.values()[widthOrdinal];
+
+            long size = MappedCostTable.HEADER_BYTES + PackedCostTable.cellCount(n) * width.bytes();
+            if (pool.size < size) {
+                throw new IOException(String.format("Binary cost table is truncated, expected %s bytes: %s", size, file));
+            }
+        }
+
+        @Override
+        public int size() {
+            return n;
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest) throws IOException {
+            long index = PackedCostTable.rowOffset(n, row) + (long) (from - row - 1);
+            long position = MappedCostTable.HEADER_BYTES + index * width.bytes();
+            for (int k = 0; k < to - from; k++) {
+                ByteBuffer page = pool.page(position >>> PAGE_SHIFT);
+                int offset = (int) (position & (PAGE_SIZE - 1));
+                switch (width) {
+                    case SHORT:
+                        dest[k] = page.getShort(offset);
+                        break;
+                    case INT:
+                        dest[k] = page.getInt(offset);
+                        break;
+                    default:
+                        dest[k] = page.getLong(offset);
+                        break;
+                }
+                position += width.bytes();
+            }
+        }
+
+        @Override
+        public double bytesPerCell() {
+            return width.bytes();
+        }
+
+        @Override
+        public long indexBytes() {
+            return 0;
+        }
+    }
+
+    /**
+     * Rows of a tab separated text table, parsed from a cursor kept for every row.
+     */
+    private static final class TextSource implements RowSource {
+
+        private final BufferPool pool;
+        private final File file;
+        private final int n;
+        private final long indexBytes;
+
+        /**
+         * The byte position of the next unread cell of each row, which starts as the offset of the row.
+         */
+        private final long[] position;
+
+        /**
+         * The column of the next unread cell of each row.
+         */
+        private final int[] column;
+
+        private TextSource(BufferPool pool, File file) throws IOException {
+            this.pool = pool;
+            this.file = file;
+
+            // The first line determines the number of posts.
+            int cells = 1;
+            long offset = 0;
+            while (offset < pool.size) {
+                byte b = pool.get(offset++);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '\t') {
+                    cells += 1;
+                }
+            }
+            this.n = pool.size == 0 ? 0 : cells;
+            this.position = new long[n];
+            this.column = new int[n];
+
+            // Index the start of every row in a single sequential pass outside the pool.
+            int row = 1;
+            long read = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                long base = 0;
+                int count;
+                while (row < n && (count = channel.read(buffer, base)) > 0) {
+                    for (int k = 0; k < count && row < n; k++) {
+                        if (buffer.get(k) == '\n') {
+                            position[row++] = base + k + 1;
+                        }
+                    }
+                    base += count;
+                    read += count;
+                    buffer.clear();
+                }
+            }
+            this.indexBytes = read;
+
+            if (row < n) {
+                throw new IOException(String.format("Table ended after %s of %s rows: %s", row, n, file));
+            }
+        }
+
+        @Override
+        public int size() {
+            return n;
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest) throws IOException {
+            long offset = position[row];
+            int current = column[row];
+
+            // Skip the cells before the first column, which are only ever the lower triangle and the diagonal.
+            while (current < from) {
+                byte b = offset < pool.size ? pool.get(offset) : (byte) '\n';
+                if (b == '\n' || b == '\r') {
+                    throw new IOException(String.format("Row %s ends after %s of %s columns: %s", row, current, n, file));
+                }
+                if (b == '\t') {
+                    current += 1;
+                }
+                offset += 1;
+            }
+
+            for (int k = 0; k < to - from; k++) {
+                long value = 0;
+                int digits = 0;
+                byte b;
+                while (offset < pool.size && (b = pool.get(offset)) >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    digits += 1;
+                    offset += 1;
+                }
+
+                // "NA" marks a rental a sparse table does not offer.
+                if (digits == 0 && offset + 1 < pool.size && pool.get(offset) == 'N' && pool.get(offset + 1) == 'A') {
+                    value = CostTable.UNAVAILABLE;
+                    digits = 2;
+                    offset += 2;
+                }
+
+                byte end = offset < pool.size ? pool.get(offset) : (byte) '\n';
+                if (digits == 0 || (end != '\t' && end != '\n' && end != '\r')) {
+                    throw new IOException(String.format("Invalid cost at (%s, %s): %s", row, from + k, file));
+                }
+                if (end != '\t' && from + k < n - 1) {
+                    throw new IOException(String.format("Row %s ends after %s of %s columns: %s", row, from + k + 1, n, file));
+                }
+
+                dest[k] = value;
+                offset += 1;
+            }
+
+            position[row] = offset;
+            column[row] = to;
+        }
+
+        @Override
+        public double bytesPerCell() {
+            return n == 0 ? 0 : (double) pool.size / n / n;
+        }
+
+        @Override
+        public long indexBytes() {
+            return indexBytes;
+        }
+    }
+
+    /**
+     * Least recently used pool of fixed size pages of a file. The page asked for last is remembered
+     * so runs of reads from the same page skip the lookup and are not counted as requests.
+     */
+    private static final class BufferPool {
+
+        private final FileChannel channel;
+        private final long size;
+        private final long capacity;
+        private final LinkedHashMap<Long, ByteBuffer> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long lastIndex = -1;
+        private ByteBuffer lastPage;
+
+        private long hits;
+        private long misses;
+        private long bytesRead;
+
+        private BufferPool(FileChannel channel, long capacity) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.capacity = capacity;
+        }
+
+        /**
+         * Returns a byte of the file.
+         *
+         * @param offset the byte offset, less than the size of the file
+         *
+         * @return the byte
+         *
+         * @throws IOException if the page cannot be read
+         */
+        private byte get(long offset) throws IOException {
+            return page(offset >>> PAGE_SHIFT).get((int) (offset & (PAGE_SIZE - 1)));
+        }
+
+        /**
+         * Returns a page of the file, reading it if it is not in the pool.
+         *
+         * @param index the page index
+         *
+         * @return the page
+         *
+         * @throws IOException if the page cannot be read
+         */
+        private ByteBuffer page(long index) throws IOException {
+            if (index == lastIndex) {
+                return lastPage;
+            }
+
+            ByteBuffer page = pages.get(index);
+            if (page != null) {
+                hits += 1;
+            } else {
+                misses += 1;
+                page = load(index);
+            }
+
+            lastIndex = index;
+            lastPage = page;
+            return page;
+        }
+
+        /**
+         * Reads a page into the pool, reusing the buffer of the least recently used page when full.
+         *
+         * @param index the page index
+         *
+         * @return the page
+         *
+         * @throws IOException if the page cannot be read
+         */
+        private ByteBuffer load(long index) throws IOException {
+            ByteBuffer page;
+            if (pages.size() >= capacity) {
+                Iterator<Map.Entry<Long, ByteBuffer>> eldest = pages.entrySet().iterator();
+                page = eldest.next().getValue();
+                eldest.remove();
+                page.clear();
+            } else {
+                page = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            long start = index << PAGE_SHIFT;
+            while (page.hasRemaining()) {
+                int count = channel.read(page, start + page.position());
+                if (count <= 0) {
+                    break;
+                }
+                bytesRead += count;
+            }
+
+            pages.put(index, page);
+            return page;
+        }
+    }
+}
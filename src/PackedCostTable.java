@@ -0,0 +1,285 @@
+/**
+ * A cost table that stores the strict upper triangle in a single flat primitive array.
+ *
+ * Row r occupies the cells for columns r + 1 to n - 1 and rows are laid out one after
+ * another, so reading a row from left to right walks the array sequentially.
+ */
+public abstract class PackedCostTable extends CostTable {
+
+    /**
+     * The number of posts in the table.
+     */
+    protected final int n;
+
+    /**
+     * Constructor that takes the dimension of the table.
+     *
+     * @param n the dimension
+     */
+    protected PackedCostTable(int n) {
+        this.n = n;
+    }
+
+    /**
+     * Allocates an empty table using the narrowest width that can hold maxValue.
+     *
+     * @param n        the dimension of the table
+     * @param maxValue the largest value that will be stored
+     *
+     * @return an empty table
+     */
+    public static PackedCostTable allocate(int n, long maxValue) {
+        return allocate(n, Width.forMaximum(maxValue));
+    }
+
+    /**
+     * Allocates an empty table using the given width.
+     *
+     * @param n     the dimension of the table
+     * @param width the value width
+     *
+     * @return an empty table
+     */
+    public static PackedCostTable allocate(int n, Width width) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Invalid table dimension: " + n);
+        }
+
+        long cells = cellCount(n);
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Table dimension is too large to be packed: " + n);
+        }
+
+        switch (width) {
+            case SHORT:
+                return new ShortTable(n, new short[(int) cells]);
+            case INT:
+                return new IntTable(n, new int[(int) cells]);
+            default:
+                return new LongTable(n, new long[(int) cells]);
+        }
+    }
+
+    /**
+     * Returns the number of cells in the strict upper triangle of an n by n table.
+     *
+     * @param n the dimension
+     *
+     * @return the number of cells
+     */
+    public static long cellCount(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * Returns the index into the packed array of the first column after the diagonal of a row.
+     *
+     * @param n   the dimension
+     * @param row the row
+     *
+     * @return the array index of (row, row + 1)
+     */
+    static int rowOffset(int n, int row) {
+        return (int) ((long) row * (n - 1) - (long) row * (row - 1) / 2);
+    }
+
+    /**
+     * Returns the index into the packed array of a cell.
+     *
+     * @param row    the row, less than column
+     * @param column the column
+     *
+     * @return the array index
+     */
+    protected final int index(int row, int column) {
+        return rowOffset(n, row) + (column - row - 1);
+    }
+
+    /**
+     * Stores a cost in the table.
+     *
+     * @param row    the post the rental starts at
+     * @param column the post the rental is returned at, greater than row
+     * @param value  the cost
+     *
+     * @throws IllegalArgumentException if the value does not fit the width of the table
+     */
+    public abstract void set(int row, int column, long value);
+
+    /**
+     * Returns a copy of this table using a width that can hold maxValue.
+     *
+     * @param maxValue the largest value that will be stored
+     *
+     * @return a copy of this table, or this table when it is already wide enough
+     */
+    public PackedCostTable widen(long maxValue) {
+        Width target = Width.forMaximum(maxValue);
+        if (target.ordinal() <= width().ordinal()) {
+            return this;
+        }
+
+        return copyOf(this, target);
+    }
+
+    /**
+     * Copies any table into a packed table.
+     *
+     * @param costTable the table to copy
+     * @param width     the width of the copy, wide enough for every value of the table
+     *
+     * @return the copy
+     */
+    public static PackedCostTable copyOf(CostTable costTable, Width width) {
+        int n = costTable.size();
+        PackedCostTable copy = allocate(n, width);
+        long[] buffer = new long[n];
+        for (int row = 0; row < n - 1; row++) {
+            costTable.readRow(row, row + 1, n, buffer, 0);
+            for (int column = row + 1; column < n; column++) {
+                copy.set(row, column, buffer[column - row - 1]);
+            }
+        }
+
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Checks that a value fits the width of this table.
+     *
+     * @param value the value
+     */
+    protected final void checkValue(long value) {
+        if (value < 0 || value > width().maxValue()) {
+            throw new IllegalArgumentException(String.format("Value %s does not fit a %s table", value, width()));
+        }
+    }
+
+    /**
+     * Table that stores its values as shorts.
+     */
+    private static final class ShortTable extends PackedCostTable {
+
+        private final short[] cells;
+
+        private ShortTable(int n, short[] cells) {
+            super(n);
+            this.cells = cells;
+        }
+
+        @Override
+        public long get(int row, int column) {
+            return column > row ? cells[index(row, column)] : 0;
+        }
+
+        @Override
+        public void set(int row, int column, long value) {
+            checkValue(value);
+            cells[index(row, column)] = (short) value;
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest, int offset) {
+            int base = index(row, from);
+            for (int k = 0; k < to - from; k++) {
+                dest[offset + k] = cells[base + k];
+            }
+        }
+
+        @Override
+        public Width width() {
+            return Width.SHORT;
+        }
+
+        @Override
+        public long footprintBytes() {
+            return align(12 + 4) + align(16 + (long) Short.BYTES * cells.length);
+        }
+    }
+
+    /**
+     * Table that stores its values as ints.
+     */
+    private static final class IntTable extends PackedCostTable {
+
+        private final int[] cells;
+
+        private IntTable(int n, int[] cells) {
+            super(n);
+            this.cells = cells;
+        }
+
+        @Override
+        public long get(int row, int column) {
+            return column > row ? cells[index(row, column)] : 0;
+        }
+
+        @Override
+        public void set(int row, int column, long value) {
+            checkValue(value);
+            cells[index(row, column)] = (int) value;
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest, int offset) {
+            int base = index(row, from);
+            for (int k = 0; k < to - from; k++) {
+                dest[offset + k] = cells[base + k];
+            }
+        }
+
+        @Override
+        public Width width() {
+            return Width.INT;
+        }
+
+        @Override
+        public long footprintBytes() {
+            return align(12 + 4) + align(16 + (long) Integer.BYTES * cells.length);
+        }
+    }
+
+    /**
+     * Table that stores its values as longs.
+     */
+    private static final class LongTable extends PackedCostTable {
+
+        private final long[] cells;
+
+        private LongTable(int n, long[] cells) {
+            super(n);
+            this.cells = cells;
+        }
+
+        @Override
+        public long get(int row, int column) {
+            return column > row ? cells[index(row, column)] : 0;
+        }
+
+        @Override
+        public void set(int row, int column, long value) {
+            checkValue(value);
+            cells[index(row, column)] = value;
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest, int offset) {
+            System.arraycopy(cells, index(row, from), dest, offset, to - from);
+        }
+
+        @Override
+        public Width width() {
+            return Width.LONG;
+        }
+
+        @Override
+        public long footprintBytes() {
+            return align(12 + 4) + align(16 + (long) Long.BYTES * cells.length);
+        }
+    }
+}
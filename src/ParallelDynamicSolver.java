@@ -0,0 +1,243 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dynamic programming solver that splits the work for large tables across a fork-join pool.
+ *
+ * The destinations are processed in blocks of columns. By the time a block is reached the minimum
+ * cost of every post before it is final, so the candidates those posts offer the block are
+ * independent of each other: the rows before the block are split into ranges that are scanned in
+ * parallel, and each range keeps its own best candidate per column. The ranges are merged in row
+ * order and the small triangle inside the block is then relaxed sequentially.
+ *
+ * Every task reads row segments of the block, which are contiguous in the row major packed layout,
+ * so each scan already reads the transposed block it reduces over without copying the table. The
+ * reduction runs over primitive arrays, with the jdk.incubator.vector API when the vector Maven
+ * profile compiled it in and the module is added at run time, and with a plain loop otherwise.
+ */
+public final class ParallelDynamicSolver {
+
+    /**
+     * Default number of columns in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 2048;
+
+    /**
+     * Number of cells below which a range of rows is scanned without splitting it further.
+     */
+    private static final long MIN_TASK_CELLS = 1 << 18;
+
+    /**
+     * Name of the vectorized reduction, which is only compiled by the vector Maven profile.
+     */
+    private static final String VECTOR_REDUCTION = "VectorRowReduction";
+
+    /**
+     * The reduction the scans use, vectorized if it could be loaded.
+     */
+    private static final Reduction REDUCTION = loadReduction();
+
+    private final ForkJoinPool pool;
+    private final int blockSize;
+
+    /**
+     * Constructor that uses the common pool and the default block size.
+     */
+    public ParallelDynamicSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor that takes the pool to run on and the number of columns in a block.
+     *
+     * @param pool      the fork-join pool
+     * @param blockSize the number of columns in a block
+     */
+    public ParallelDynamicSolver(ForkJoinPool pool, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        this.pool = pool;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public tcss343.Result solve(CostTable costTable) {
+        int n = costTable.size();
+        long[] minCost = new long[n];
+        int[] path = new int[n];
+        Arrays.fill(minCost, Long.MAX_VALUE);
+        path[0] = -1;
+        minCost[0] = 0;
+
+        long[] row = new long[blockSize];
+        for (int from = 1; from < n; from += blockSize) {
+            int to = Math.min(from + blockSize, n);
+            int width = to - from;
+
+            // Candidates from every post before the block, scanned in parallel.
+            BlockScan scan = new BlockScan(costTable, minCost, 0, from, from, to);
+            if ((long) from * width >= 2 * MIN_TASK_CELLS && pool.getParallelism() > 1) {
+                pool.invoke(scan);
+            } else {
+                scan.compute();
+            }
+
+            for (int k = 0; k < width; k++) {
+                if (scan.bestCost[k] < minCost[from + k]) {
+                    minCost[from + k] = scan.bestCost[k];
+                    path[from + k] = scan.bestPost[k];
+                }
+            }
+
+            // Candidates from posts inside the block, which become final one after another.
+            for (int i = from; i < to - 1; i++) {
+                costTable.readRow(i, i + 1, to, row, 0);
+                long base = minCost[i];
+                for (int j = i + 1; j < to; j++) {
+                    long cost = base + row[j - i - 1];
+                    if (cost < minCost[j]) {
+                        minCost[j] = cost;
+                        path[j] = i;
+                    }
+                }
+            }
+        }
+
+        return tcss343.reconstructResult(minCost, path);
+    }
+
+    /**
+     * Returns whether the scans use the vectorized reduction.
+     *
+     * @return true if the vectorized reduction was loaded
+     */
+    public static boolean isVectorized() {
+        return !(REDUCTION instanceof ScalarReduction);
+    }
+
+    /**
+     * Loads the vectorized reduction, falling back to the scalar one if it was not compiled in or
+     * the jdk.incubator.vector module was not added at run time.
+     *
+     * @return the reduction
+     */
+    private static Reduction loadReduction() {
+        try {
+            return (Reduction) Class.forName(VECTOR_REDUCTION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return new ScalarReduction();
+        }
+    }
+
+    /**
+     * Reduces the rentals out of a range of posts into the best candidate of each column of a block.
+     */
+    interface Reduction {
+
+        /**
+         * Finds the best candidate of each column of a block among a range of posts. Only a strictly
+         * cheaper candidate replaces the best one, so earlier posts win ties.
+         *
+         * @param costTable the cost chart
+         * @param minCost   the minimum cost to reach each post, final for the range
+         * @param firstRow  the first post of the range
+         * @param lastRow   the post after the range
+         * @param from      the first column of the block
+         * @param to        the column after the block
+         * @param cost      receives the cost of the best candidate of each column
+         * @param posts     receives the post of the best candidate of each column
+         */
+        void scan(CostTable costTable, long[] minCost, int firstRow, int lastRow, int from, int to,
+                  long[] cost, int[] posts);
+    }
+
+    /**
+     * The reduction as a plain loop.
+     */
+    static final class ScalarReduction implements Reduction {
+
+        @Override
+        public void scan(CostTable costTable, long[] minCost, int firstRow, int lastRow, int from, int to,
+                         long[] cost, int[] posts) {
+            int width = to - from;
+            long[] row = new long[width];
+            Arrays.fill(cost, 0, width, Long.MAX_VALUE);
+
+            for (int i = firstRow; i < lastRow; i++) {
+                costTable.readRow(i, from, to, row, 0);
+                long base = minCost[i];
+                for (int k = 0; k < width; k++) {
+                    long candidate = base + row[k];
+                    if (candidate < cost[k]) {
+                        cost[k] = candidate;
+                        posts[k] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Task that finds the best candidate for each column of a block among a range of rows.
+     */
+    private static final class BlockScan extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CostTable costTable;
+        private final long[] minCost;
+        private final int firstRow;
+        private final int lastRow;
+        private final int from;
+        private final int to;
+        private long[] bestCost;
+        private int[] bestPost;
+
+        private BlockScan(CostTable costTable, long[] minCost, int firstRow, int lastRow, int from, int to) {
+            this.costTable = costTable;
+            this.minCost = minCost;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int width = to - from;
+            if ((long) (lastRow - firstRow) * width >= 2 * MIN_TASK_CELLS && lastRow - firstRow > 1) {
+                int middle = (firstRow + lastRow) >>> 1;
+                BlockScan left = new BlockScan(costTable, minCost, firstRow, middle, from, to);
+                BlockScan right = new BlockScan(costTable, minCost, middle, lastRow, from, to);
+                invokeAll(left, right);
+
+                // The left half holds the earlier rows so it wins ties.
+                bestCost = left.bestCost;
+                bestPost = left.bestPost;
+                for (int k = 0; k < width; k++) {
+                    if (right.bestCost[k] < bestCost[k]) {
+                        bestCost[k] = right.bestCost[k];
+                        bestPost[k] = right.bestPost[k];
+                    }
+                }
+                return;
+            }
+
+            long[] cost = new long[width];
+            int[] post = new int[width];
+            REDUCTION.scan(costTable, minCost, firstRow, lastRow, from, to, cost, post);
+
+            bestCost = cost;
+            bestPost = post;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes results to a report as plain text, CSV or JSON lines.
+ *
+ * Records are formatted straight into a single reusable character buffer that is handed to the
+ * underlying writer whenever it fills, so numbers and sequences are never turned into strings and
+ * writing a result allocates nothing. Sequences longer than the buffer are streamed through it.
+ */
+public final class ReportWriter implements Closeable {
+
+    /**
+     * Size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The formats a report can be written in.
+     */
+    public enum Format {
+        /**
+         * One line per result in the same form as the console output.
+         */
+        TEXT,
+        /**
+         * Comma separated values with a header line, posts in a sequence separated by "->".
+         */
+        CSV,
+        /**
+         * One JSON object per line, the sequence as an array of posts.
+         */
+        JSON;
+
+        /**
+         * Picks the format from the extension of a file, text unless it ends with .csv, .json or .jsonl.
+         *
+         * @param file the report file
+         *
+         * @return the format
+         */
+        public static Format forFile(File file) {
+            String name = file.getName().toLowerCase();
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".json") || name.endsWith(".jsonl")) {
+                return JSON;
+            }
+            return TEXT;
+        }
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final char[] digits = new char[20];
+    private int position;
+    private long records;
+
+    /**
+     * Constructor that creates a report file, picking the format from its extension.
+     *
+     * @param file the report file
+     *
+     * @throws IOException if the file cannot be created
+     */
+    public ReportWriter(File file) throws IOException {
+        this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), Format.forFile(file));
+    }
+
+    /**
+     * Constructor that takes the writer to report to and the format.
+     *
+     * @param out    the writer, which is closed with the report
+     * @param format the format
+     *
+     * @throws IOException if the header cannot be written
+     */
+    public ReportWriter(Writer out, Format format) throws IOException {
+        this.out = out;
+        this.format = format;
+
+        if (format == Format.CSV) {
+            append("source,algorithm,posts,total_cost,rentals,optimal,sequence\n");
+        }
+    }
+
+    /**
+     * Writes a result to the report.
+     *
+     * @param source    what was solved, such as the file name
+     * @param algorithm the name of the algorithm that found the result
+     * @param posts     the number of posts of the table, which the sequence need not end at
+     * @param result    the result
+     *
+     * @throws IOException if the report cannot be written
+     */
+    public void write(String source, String algorithm, int posts, tcss343.Result result) throws IOException {
+        int[] sequence = result.sequence();
+
+        switch (format) {
+            case CSV:
+                appendCsv(source);
+                append(',');
+                appendCsv(algorithm);
+                append(',');
+                append(posts);
+                append(',');
+                if (result.hasRoute()) {
+                    append(result.totalCost());
+                }
+                append(',');
+                append(result.rentals());
+                append(',');
+                append(result.isOptimal() ? "true" : "false");
+                append(',');
+                appendSequence(sequence, "->");
+                break;
+            case JSON:
+                append("{\"source\":");
+                appendJson(source);
+                append(",\"algorithm\":");
+                appendJson(algorithm);
+                append(",\"posts\":");
+                append(posts);
+                append(",\"totalCost\":");
+                if (result.hasRoute()) {
+                    append(result.totalCost());
+                } else {
+                    append("null");
+                }
+                append(",\"rentals\":");
+                append(result.rentals());
+                append(",\"optimal\":");
+                append(result.isOptimal() ? "true" : "false");
+                append(",\"sequence\":[");
+                appendSequence(sequence, ",");
+                append("]}");
+                break;
+            default:
+                append(source);
+                append(' ');
+                append(algorithm);
+                if (!result.hasRoute()) {
+                    append(": No route to the last post");
+                    break;
+                }
+                append(": Total Cost: ");
+                append(result.totalCost());
+                append(", Sequence: ");
+                appendSequence(sequence, "->");
+                if (!result.isOptimal()) {
+                    append(" (not optimal)");
+                }
+                break;
+        }
+
+        append('\n');
+        records += 1;
+    }
+
+    /**
+     * Returns the number of results written.
+     *
+     * @return the number of results
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Hands the buffered characters to the underlying writer and flushes it.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Appends the posts of a sequence with a separator between them.
+     *
+     * @param sequence  the posts
+     * @param separator the separator
+     *
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void appendSequence(int[] sequence, String separator) throws IOException {
+        for (int i = 0; i < sequence.length; i++) {
+            if (i > 0) {
+                append(separator);
+            }
+            append(sequence[i]);
+        }
+    }
+
+    /**
+     * Appends a CSV field, quoting it when it holds a comma, quote or line break.
+     *
+     * @param value the field
+     *
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void appendCsv(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            append(value);
+            return;
+        }
+
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                append('"');
+            }
+            append(c);
+        }
+        append('"');
+    }
+
+    /**
+     * Appends a JSON string, escaping quotes, backslashes and control characters.
+     *
+     * @param value the string
+     *
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void appendJson(String value) throws IOException {
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            } else if (c < 0x20) {
+                append("\\u00");
+                append(Character.forDigit(c >> 4, 16));
+                append(Character.forDigit(c & 0xF, 16));
+            } else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    /**
+     * Appends the decimal digits of a value without creating a string.
+     *
+     * @param value the value
+     *
+     * @throws IOException if the buffer cannot be drained
+     */
+    private void append(long value) throws IOException {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                append(String.valueOf(value));
+                return;
+            }
+            append('-');
+            value = -value;
+        }
+
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        if (position + digits.length - start > buffer.length) {
+            drain();
+        }
+        System.arraycopy(digits, start, buffer, position, digits.length - start);
+        position += digits.length - start;
+    }
+
+    private void append(String value) throws IOException {
+        for (int offset = 0; offset < value.length(); ) {
+            if (position == buffer.length) {
+                drain();
+            }
+            int count = Math.min(value.length() - offset, buffer.length - position);
+            value.getChars(offset, offset + count, buffer, position);
+            position += count;
+            offset += count;
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    /**
+     * Hands the buffered characters to the underlying writer.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
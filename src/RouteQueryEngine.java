@@ -0,0 +1,287 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Answers cheapest rental queries between arbitrary posts of a single table.
+ *
+ * The dynamic programming algorithm from an origin computes the cheapest cost to every later post
+ * at once, so the minCost and path arrays of each origin are cached and every destination from the
+ * same origin is answered by following the path back. Cached origins are evicted least recently used
+ * first once their arrays exceed the memory budget. For small tables every origin can be computed
+ * eagerly in parallel.
+ */
+public final class RouteQueryEngine {
+
+    /**
+     * Default memory budget for the cached origins.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private final CostTable costTable;
+    private final long memoryBudget;
+    private final LinkedHashMap<Integer, Source> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+
+    /**
+     * Constructor that takes the table to query and the memory budget of the cache.
+     *
+     * @param costTable    the cost chart
+     * @param memoryBudget the number of bytes the cached origins may use
+     */
+    public RouteQueryEngine(CostTable costTable, long memoryBudget) {
+        this.costTable = costTable;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Finds the cheapest sequence of rentals from an origin to a destination.
+     *
+     * @param origin      the post to start at
+     * @param destination the post to end at, not before the origin
+     *
+     * @return the cheapest sequence of rentals
+     */
+    public tcss343.Result query(int origin, int destination) {
+        long start = System.nanoTime();
+        int n = costTable.size();
+        if (origin < 0 || destination >= n || destination < origin) {
+            throw new IllegalArgumentException(String.format("Invalid query from %s to %s in a table of %s posts",
+                    origin, destination, n));
+        }
+
+        Source source = source(origin);
+
+        // Follow the path back from the destination to the origin, once to count and once to fill.
+        int length = 0;
+        for (int post = destination; post != -1; post = source.path[post - origin]) {
+            length += 1;
+        }
+
+        int[] sequence = new int[length];
+        for (int post = destination, k = length - 1; post != -1; post = source.path[post - origin], k--) {
+            sequence[k] = post;
+        }
+
+        tcss343.Result result = new tcss343.Result(sequence, source.minCost[destination - origin]);
+        queries.increment();
+        queryNanos.add(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Answers a batch of queries. Queries are answered grouped by origin so each origin is
+     * computed at most once for the batch, and the results are returned in the order asked.
+     *
+     * @param origins      the posts to start at
+     * @param destinations the posts to end at
+     *
+     * @return the cheapest sequence of rentals for each query
+     */
+    public tcss343.Result[] query(int[] origins, int[] destinations) {
+        if (origins.length != destinations.length) {
+            throw new IllegalArgumentException("Every origin needs a destination");
+        }
+
+        Integer[] order = new Integer[origins.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(origins[a], origins[b]));
+
+        tcss343.Result[] results = new tcss343.Result[origins.length];
+        for (int k : order) {
+            results[k] = query(origins[k], destinations[k]);
+        }
+
+        return results;
+    }
+
+    /**
+     * Computes every origin of the table in parallel.
+     *
+     * @throws IllegalStateException if every origin does not fit the memory budget
+     */
+    public void precomputeAll() {
+        int n = costTable.size();
+        long required = 0;
+        for (int origin = 0; origin < n; origin++) {
+            required += Source.bytes(n - origin);
+        }
+
+        if (required > memoryBudget) {
+            throw new IllegalStateException(String.format("Precomputing every origin needs %s bytes, the budget is %s bytes",
+                    required, memoryBudget));
+        }
+
+        Source[] sources = new Source[n];
+        IntStream.range(0, n).parallel().forEach(origin -> sources[origin] = compute(origin));
+
+        synchronized (cache) {
+            for (Source source : sources) {
+                put(source);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queries answered.
+     *
+     * @return the number of queries
+     */
+    public long queries() {
+        return queries.sum();
+    }
+
+    /**
+     * Returns the fraction of queries whose origin was already cached.
+     *
+     * @return the hit rate from 0 to 1
+     */
+    public double hitRate() {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    /**
+     * Returns the average time taken to answer a query.
+     *
+     * @return the average latency in nanoseconds
+     */
+    public double averageLatencyNanos() {
+        long count = queries.sum();
+        return count == 0 ? 0 : (double) queryNanos.sum() / count;
+    }
+
+    /**
+     * Returns the number of bytes used by the cached origins.
+     *
+     * @return the number of bytes
+     */
+    public long cachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Returns the cached arrays of an origin, computing them if needed.
+     *
+     * @param origin the origin
+     *
+     * @return the arrays of the origin
+     */
+    private Source source(int origin) {
+        synchronized (cache) {
+            Source source = cache.get(origin);
+            if (source != null) {
+                hits.increment();
+                return source;
+            }
+        }
+
+        misses.increment();
+        Source source = compute(origin);
+        synchronized (cache) {
+            put(source);
+        }
+        return source;
+    }
+
+    /**
+     * Adds an origin to the cache and evicts the least recently used origins over the budget.
+     * Must be called while holding the cache lock.
+     *
+     * @param source the arrays of the origin
+     */
+    private void put(Source source) {
+        Source previous = cache.put(source.origin, source);
+        if (previous != null) {
+            cachedBytes -= previous.bytes();
+        }
+        cachedBytes += source.bytes();
+
+        Iterator<Map.Entry<Integer, Source>> iterator = cache.entrySet().iterator();
+        while (cachedBytes > memoryBudget && iterator.hasNext()) {
+            Source eldest = iterator.next().getValue();
+            if (eldest == source) {
+                // Always keep the origin that was just computed.
+                continue;
+            }
+
+            cachedBytes -= eldest.bytes();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Runs the dynamic programming algorithm from an origin.
+     *
+     * @param origin the origin
+     *
+     * @return the arrays of the origin
+     */
+    private Source compute(int origin) {
+        int n = costTable.size();
+        int length = n - origin;
+        long[] minCost = new long[length];
+        int[] path = new int[length];
+        long[] row = new long[length];
+        Arrays.fill(minCost, Long.MAX_VALUE);
+        minCost[0] = 0;
+        path[0] = -1;
+
+        for (int i = origin; i < n - 1; i++) {
+            costTable.readRow(i, i + 1, n, row, 0);
+            long base = minCost[i - origin];
+            for (int j = i + 1; j < n; j++) {
+                long cost = base + row[j - i - 1];
+                if (cost < minCost[j - origin]) {
+                    minCost[j - origin] = cost;
+                    path[j - origin] = i;
+                }
+            }
+        }
+
+        return new Source(origin, minCost, path);
+    }
+
+    /**
+     * The minCost and path arrays of an origin, indexed from the origin.
+     */
+    private static final class Source {
+
+        private final int origin;
+        private final long[] minCost;
+        private final int[] path;
+
+        private Source(int origin, long[] minCost, int[] path) {
+            this.origin = origin;
+            this.minCost = minCost;
+            this.path = path;
+        }
+
+        private long bytes() {
+            return bytes(minCost.length);
+        }
+
+        /**
+         * Returns the approximate number of bytes used by the arrays of an origin.
+         *
+         * @param length the number of posts from the origin to the end
+         *
+         * @return the number of bytes
+         */
+        private static long bytes(int length) {
+            return CostTable.align(16 + 8L * length) + CostTable.align(16 + 4L * length) + 64;
+        }
+    }
+}
@@ -0,0 +1,609 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the generators, readers and solvers and exports the measurements to a file.
+ *
+ * Each measured step is a span that records the wall time, the CPU time and the bytes allocated,
+ * both from {@link ThreadMXBean}, the peak heap, the cells read and the operations the algorithm
+ * evaluated. Cells are counted by wrapping the table in a {@link CountingCostTable}, which adds a
+ * plain field increment per lookup on the thread that wrapped the table, and one shared counter
+ * update per row read elsewhere. Taking a span costs a few microseconds, so the metrics can stay on
+ * for production runs.
+ *
+ * Spans are exported either as one JSON object per line as they finish, or, for files ending with
+ * .prom, as totals per step in the Prometheus text format written when the metrics are closed.
+ */
+public final class SolverMetrics implements Closeable {
+
+    /**
+     * Prefix of every Prometheus metric.
+     */
+    private static final String PROMETHEUS_PREFIX = "rental_";
+
+    /**
+     * The formats metrics can be exported in.
+     */
+    public enum Format {
+        /**
+         * One JSON object per span.
+         */
+        JSON,
+        /**
+         * Totals per phase and step in the Prometheus text exposition format.
+         */
+        PROMETHEUS;
+
+        /**
+         * Picks the format from the extension of a file, Prometheus for .prom and JSON lines otherwise.
+         *
+         * @param file the metrics file
+         *
+         * @return the format
+         */
+        public static Format forFile(File file) {
+            return file.getName().toLowerCase().endsWith(".prom") ? PROMETHEUS : JSON;
+        }
+    }
+
+    /**
+     * Metrics that measure nothing, used when no metrics file was requested.
+     */
+    private static final SolverMetrics DISABLED = new SolverMetrics(null, Format.JSON);
+
+    private final Writer out;
+    private final Format format;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final Map<String, Total> totals = new LinkedHashMap<>();
+    private long spans;
+
+    /**
+     * Constructor that creates a metrics file, picking the format from its extension.
+     *
+     * @param file the metrics file
+     *
+     * @throws IOException if the file cannot be created
+     */
+    public SolverMetrics(File file) throws IOException {
+        this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), Format.forFile(file));
+    }
+
+    /**
+     * Constructor that takes the writer to export to and the format.
+     *
+     * @param out    the writer, which is closed with the metrics, or null to measure nothing
+     * @param format the format
+     */
+    public SolverMetrics(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+
+        if (out != null) {
+            if (threads.isThreadCpuTimeSupported()) {
+                threads.setThreadCpuTimeEnabled(true);
+            }
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+                if (allocation.isThreadAllocatedMemorySupported()) {
+                    allocation.setThreadAllocatedMemoryEnabled(true);
+                }
+            }
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns metrics that measure nothing.
+     *
+     * @return the disabled metrics
+     */
+    public static SolverMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns whether or not these metrics measure anything.
+     *
+     * @return true if spans are exported
+     */
+    public boolean isEnabled() {
+        return out != null;
+    }
+
+    /**
+     * Starts measuring a step run on the calling thread alone. Its CPU time and allocations are
+     * those of the calling thread and the peak heap is not reset, so steps running at the same time
+     * on other threads do not disturb each other.
+     *
+     * @param phase  what kind of step it is, such as generate, read or solve
+     * @param name   the name of the step, such as the algorithm
+     * @param source what the step works on, such as the file name
+     *
+     * @return the span, finished by the caller
+     */
+    public Span startThread(String phase, String name, String source) {
+        return new Span(phase, name, source, false);
+    }
+
+    /**
+     * Starts measuring a step that may use other threads. Its CPU time and allocations are summed
+     * over every live thread and the peak heap is reset, so only one such step should run at a time.
+     *
+     * @param phase  what kind of step it is, such as generate, read or solve
+     * @param name   the name of the step, such as the algorithm
+     * @param source what the step works on, such as the file name
+     *
+     * @return the span, finished by the caller
+     */
+    public Span start(String phase, String name, String source) {
+        return new Span(phase, name, source, true);
+    }
+
+    /**
+     * Returns the number of spans exported.
+     *
+     * @return the number of spans
+     */
+    public synchronized long spans() {
+        return spans;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            if (format == Format.PROMETHEUS) {
+                writePrometheus();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the CPU time and allocated bytes of the calling thread or of every live thread.
+     *
+     * @param allThreads whether or not to sum over every live thread
+     *
+     * @return the CPU nanoseconds and the allocated bytes, -1 where unsupported
+     */
+    private long[] sample(boolean allThreads) {
+        long[] sample = {-1, -1};
+        if (out == null) {
+            return sample;
+        }
+
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        boolean cpu = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+        if (!allThreads) {
+            sample[0] = cpu ? threads.getCurrentThreadCpuTime() : -1;
+            sample[1] = allocation != null ? allocation.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+            return sample;
+        }
+
+        // Threads that died during the step are missed, the pools of the parallel solvers stay alive.
+        long[] ids = threads.getAllThreadIds();
+        if (cpu) {
+            sample[0] = sum(allocation != null ? allocation.getThreadCpuTime(ids) : cpuTimes(ids));
+        }
+        if (allocation != null) {
+            sample[1] = sum(allocation.getThreadAllocatedBytes(ids));
+        }
+        return sample;
+    }
+
+    private long[] cpuTimes(long[] ids) {
+        long[] times = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            times[i] = threads.getThreadCpuTime(ids[i]);
+        }
+        return times;
+    }
+
+    /**
+     * Sums the values that are known, skipping the -1 of threads that are gone.
+     *
+     * @param values the values
+     *
+     * @return the sum
+     */
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            if (value > 0) {
+                total += value;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of the peak usage of the heap pools since they were last reset.
+     *
+     * @return the peak heap in bytes
+     */
+    private long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * Exports a finished span.
+     *
+     * @param span the span
+     */
+    private synchronized void record(Span span) {
+        spans += 1;
+
+        if (format == Format.JSON) {
+            StringBuilder builder = new StringBuilder(256).append("{\"timestamp\":").append(System.currentTimeMillis())
+                    .append(",\"phase\":");
+            appendJson(builder, span.phase);
+            builder.append(",\"name\":");
+            appendJson(builder, span.name);
+            builder.append(",\"source\":");
+            appendJson(builder, span.source);
+            builder.append(",\"posts\":").append(span.posts)
+                    .append(",\"wallNanos\":").append(span.wallNanos)
+                    .append(",\"cpuNanos\":").append(span.cpuNanos)
+                    .append(",\"cellsRead\":").append(span.cellsRead)
+                    .append(",\"operations\":").append(span.operations)
+                    .append(",\"operationUnit\":");
+            appendJson(builder, span.unit);
+            builder.append(",\"allocatedBytes\":").append(span.allocatedBytes)
+                    .append(",\"peakHeapBytes\":").append(span.peakHeapBytes)
+                    .append("}\n");
+
+            try {
+                out.write(builder.toString());
+                out.flush();
+            } catch (IOException ex) {
+                System.err.println("An error occurred while writing the metrics: " + ex.getMessage());
+            }
+            return;
+        }
+
+        totals.computeIfAbsent(span.phase + '\u0000' + span.name + '\u0000' + span.unit,
+                key -> new Total(span.phase, span.name, span.unit)).add(span);
+    }
+
+    /**
+     * Writes the totals of every phase and step in the Prometheus text format.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void writePrometheus() throws IOException {
+        writeFamily("runs_total", "counter", "Number of times a step ran.", total -> total.runs);
+        writeFamily("wall_seconds_total", "counter", "Wall time spent in a step.", total -> total.wallNanos / 1e9);
+        writeFamily("cpu_seconds_total", "counter", "CPU time spent in a step.", total -> total.cpuNanos / 1e9);
+        writeFamily("cells_read_total", "counter", "Table cells read by a step.", total -> total.cellsRead);
+        writeFamily("operations_total", "counter", "Relaxations, subsets or calls a step evaluated.", total -> total.operations);
+        writeFamily("allocated_bytes_total", "counter", "Bytes allocated during a step.", total -> total.allocatedBytes);
+        writeFamily("peak_heap_bytes", "gauge", "Largest peak heap seen during a step.", total -> total.peakHeapBytes);
+    }
+
+    /**
+     * Writes one metric family with a sample for every phase and step.
+     *
+     * @param name  the name of the metric without the prefix
+     * @param type  the Prometheus type
+     * @param help  the help text
+     * @param value the value of a total
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void writeFamily(String name, String type, String help, java.util.function.ToDoubleFunction<Total> value)
+            throws IOException {
+        StringBuilder builder = new StringBuilder()
+                .append("# HELP ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(type).append('\n');
+        for (Total total : totals.values()) {
+            builder.append(PROMETHEUS_PREFIX).append(name).append("{phase=");
+            appendJson(builder, total.phase);
+            builder.append(",step=");
+            appendJson(builder, total.name);
+            builder.append(",unit=");
+            appendJson(builder, total.unit);
+            double sample = value.applyAsDouble(total);
+            builder.append("} ");
+            if (sample == Math.rint(sample) && Math.abs(sample) < 1e15) {
+                builder.append((long) sample);
+            } else {
+                builder.append(sample);
+            }
+            builder.append('\n');
+        }
+        out.write(builder.toString());
+    }
+
+    /**
+     * Appends a quoted string, escaping quotes, backslashes and control characters. The escapes
+     * are valid in both JSON strings and Prometheus label values.
+     *
+     * @param builder the builder to append to
+     * @param value   the string
+     */
+    private static void appendJson(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * A step being measured.
+     */
+    public final class Span {
+
+        private final String phase;
+        private final String name;
+        private final String source;
+        private final boolean allThreads;
+        private final long startNanos;
+        private final long startCpu;
+        private final long startAllocated;
+        private final List<CountingCostTable> counted = new ArrayList<>(1);
+
+        private int posts;
+        private long wallNanos;
+        private long cpuNanos;
+        private long cellsRead;
+        private long operations;
+        private String unit;
+        private long allocatedBytes;
+        private long peakHeapBytes;
+
+        private Span(String phase, String name, String source, boolean allThreads) {
+            this.phase = phase;
+            this.name = name;
+            this.source = source == null ? "" : source;
+            this.allThreads = allThreads;
+
+            if (allThreads) {
+                for (MemoryPoolMXBean pool : heapPools) {
+                    pool.resetPeakUsage();
+                }
+            }
+
+            long[] sample = sample(allThreads);
+            this.startCpu = sample[0];
+            this.startAllocated = sample[1];
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Wraps a table so the cells the step reads from it are counted. When the metrics are
+         * disabled the table is returned as it is.
+         *
+         * @param costTable the table
+         *
+         * @return the table to hand to the step
+         */
+        public CostTable count(CostTable costTable) {
+            if (out == null) {
+                return costTable;
+            }
+
+            CountingCostTable counting = new CountingCostTable(costTable);
+            counted.add(counting);
+            return counting;
+        }
+
+        /**
+         * Returns the cells read from the tables wrapped by {@link #count(CostTable)} so far.
+         *
+         * @return the number of cells
+         */
+        public long cellsRead() {
+            long cells = 0;
+            for (CountingCostTable counting : counted) {
+                cells += counting.cellsRead();
+            }
+            return cells;
+        }
+
+        /**
+         * Returns the single cell lookups made on the tables wrapped by {@link #count(CostTable)} so far.
+         *
+         * @return the number of lookups
+         */
+        public long lookups() {
+            long lookups = 0;
+            for (CountingCostTable counting : counted) {
+                lookups += counting.lookups();
+            }
+            return lookups;
+        }
+
+        /**
+         * Finishes the step, reading the cells from the wrapped tables, and exports it.
+         *
+         * @param posts      the number of posts of the table
+         * @param operations the number of operations the step evaluated
+         * @param unit       what an operation is, such as relaxations, subsets or calls
+         */
+        public void finish(int posts, long operations, String unit) {
+            finish(posts, cellsRead(), operations, unit);
+        }
+
+        /**
+         * Finishes the step and exports it.
+         *
+         * @param posts      the number of posts of the table
+         * @param cellsRead  the number of cells the step read
+         * @param operations the number of operations the step evaluated
+         * @param unit       what an operation is, such as relaxations, subsets or calls
+         */
+        public void finish(int posts, long cellsRead, long operations, String unit) {
+            if (out == null) {
+                return;
+            }
+
+            this.wallNanos = System.nanoTime() - startNanos;
+            long[] sample = sample(allThreads);
+            this.cpuNanos = startCpu < 0 || sample[0] < 0 ? -1 : sample[0] - startCpu;
+            this.allocatedBytes = startAllocated < 0 || sample[1] < 0 ? -1 : sample[1] - startAllocated;
+            this.peakHeapBytes = peakHeap();
+            this.posts = posts;
+            this.cellsRead = cellsRead;
+            this.operations = operations;
+            this.unit = unit;
+            record(this);
+        }
+    }
+
+    /**
+     * The totals of every span of one phase and step.
+     */
+    private static final class Total {
+
+        private final String phase;
+        private final String name;
+        private final String unit;
+        private long runs;
+        private long wallNanos;
+        private long cpuNanos;
+        private long cellsRead;
+        private long operations;
+        private long allocatedBytes;
+        private long peakHeapBytes;
+
+        private Total(String phase, String name, String unit) {
+            this.phase = phase;
+            this.name = name;
+            this.unit = unit;
+        }
+
+        private void add(Span span) {
+            runs += 1;
+            wallNanos += span.wallNanos;
+            cpuNanos += Math.max(span.cpuNanos, 0);
+            cellsRead += span.cellsRead;
+            operations += span.operations;
+            allocatedBytes += Math.max(span.allocatedBytes, 0);
+            peakHeapBytes = Math.max(peakHeapBytes, span.peakHeapBytes);
+        }
+    }
+
+    /**
+     * A table that counts the cells read through it. The thread that wraps the table counts into
+     * plain fields, which it reads back when the span finishes, so the single threaded solvers that
+     * look up one cell at a time pay no atomic update per cell. Reads from the worker threads of the
+     * parallel solvers go to {@link LongAdder}s, which they update once per row.
+     */
+    static final class CountingCostTable extends CostTable {
+
+        private final CostTable costTable;
+        private final Thread owner = Thread.currentThread();
+        private long ownerLookups;
+        private long ownerRowCells;
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder rowCells = new LongAdder();
+
+        CountingCostTable(CostTable costTable) {
+            this.costTable = costTable;
+        }
+
+        @Override
+        public int size() {
+            return costTable.size();
+        }
+
+        @Override
+        public long get(int row, int column) {
+            if (Thread.currentThread() == owner) {
+                ownerLookups += 1;
+            } else {
+                lookups.increment();
+            }
+            return costTable.get(row, column);
+        }
+
+        @Override
+        public void readRow(int row, int from, int to, long[] dest, int offset) {
+            countRowCells(to - from);
+            costTable.readRow(row, from, to, dest, offset);
+        }
+
+        @Override
+        public Width width() {
+            return costTable.width();
+        }
+
+        @Override
+        public long footprintBytes() {
+            return costTable.footprintBytes();
+        }
+
+        @Override
+        public boolean isSparse() {
+            return costTable.isSparse();
+        }
+
+        @Override
+        public long availableCount() {
+            return costTable.availableCount();
+        }
+
+        @Override
+        public int readAvailable(int row, int[] columns, long[] costs) {
+            int count = costTable.readAvailable(row, columns, costs);
+            countRowCells(count);
+            return count;
+        }
+
+        private void countRowCells(long cells) {
+            if (Thread.currentThread() == owner) {
+                ownerRowCells += cells;
+            } else {
+                rowCells.add(cells);
+            }
+        }
+
+        long lookups() {
+            return ownerLookups + lookups.sum();
+        }
+
+        long cellsRead() {
+            return ownerLookups + ownerRowCells + lookups.sum() + rowCells.sum();
+        }
+    }
+}
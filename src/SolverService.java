@@ -0,0 +1,494 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long running solver that answers HTTP requests on the loopback interface, so the JVM start,
+ * the parsing of tables and the JIT warm up are only paid once.
+ *
+ * Parsed tables stay in a cache bounded by their footprint and keyed by path, modification time
+ * and length, so a file that changes on disk is parsed again. The endpoints are:
+ *
+ * <pre>
+ * GET  /solve?file=PATH&amp;algorithm=dynamic   solves one table, one JSON line
+ * POST /solve                                 one "PATH [ALGORITHM]" per line, one JSON line each in order
+ * GET  /stats                                 requests, errors, throughput, p50/p99 latency and the cache
+ * POST /shutdown                              stops the service
+ * </pre>
+ *
+ * The lines of a POST are solved side by side on the solver pool and their results are written in
+ * the order of the lines as soon as every line before them is done. Algorithms are dynamic,
+ * bruteforce and divideconquer, dynamic when none is given.
+ */
+public final class SolverService {
+
+    /**
+     * Default memory budget of the table cache.
+     */
+    public static final long DEFAULT_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * Number of most recent latencies the percentiles are computed from.
+     */
+    private static final int LATENCY_SAMPLES = 1 << 16;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService solvers;
+    private final TableCache cache;
+    private final SolverMetrics metrics;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount;
+
+    /**
+     * Constructor that binds the service to a port of the loopback interface.
+     *
+     * @param port       the port, 0 for any free port
+     * @param threads    the number of threads solving tables
+     * @param cacheBytes the memory budget of the table cache
+     * @param metrics    the metrics each load and solve is measured with
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public SolverService(int port, int threads, long cacheBytes, SolverMetrics metrics) throws IOException {
+        // Results are flushed a line at a time, which Nagle's algorithm would hold back for the delayed ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.handlers = Executors.newCachedThreadPool();
+        this.solvers = Executors.newFixedThreadPool(threads);
+        this.cache = new TableCache(cacheBytes);
+        this.metrics = metrics;
+
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/shutdown", this::handleShutdown);
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the service listens on.
+     *
+     * @return the port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until the service is shut down through /shutdown.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops answering requests and releases the pools.
+     */
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+        solvers.shutdownNow();
+        stopped.countDown();
+    }
+
+    /**
+     * Solves the tables of a request and writes one JSON line for each of them.
+     *
+     * @param exchange the request
+     *
+     * @throws IOException if the response cannot be written
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        lines.add(line.split("\\s+", 2));
+                    }
+                }
+            }
+        } else {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (query.containsKey("file")) {
+                lines.add(new String[]{query.get("file"), query.getOrDefault("algorithm", "dynamic")});
+            }
+        }
+
+        if (lines.isEmpty()) {
+            respond(exchange, 400, "{\"error\":\"Expected a file\"}\n");
+            return;
+        }
+
+        // Every line is solved side by side, the results are written in order.
+        List<CompletableFuture<tcss343.Result>> futures = new ArrayList<>(lines.size());
+        long[] starts = new long[lines.size()];
+        int[] posts = new int[lines.size()];
+        for (int k = 0; k < lines.size(); k++) {
+            String[] line = lines.get(k);
+            int index = k;
+            starts[k] = System.nanoTime();
+            futures.add(CompletableFuture.supplyAsync(() -> solve(line[0], line.length > 1 ? line[1] : "dynamic", posts, index), solvers));
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            ReportWriter out = new ReportWriter(writer, ReportWriter.Format.JSON);
+            for (int k = 0; k < lines.size(); k++) {
+                String[] line = lines.get(k);
+                String algorithm = algorithmName(line.length > 1 ? line[1] : "dynamic");
+                try {
+                    tcss343.Result result = futures.get(k).get();
+                    out.write(line[0], algorithm, posts[k], result);
+                } catch (ExecutionException ex) {
+                    errors.incrementAndGet();
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    out.flush();
+                    writer.write(String.format("{\"source\":%s,\"error\":%s}\n", quote(line[0]), quote(String.valueOf(cause.getMessage()))));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                recordLatency(System.nanoTime() - starts[k]);
+                // Hand over each result as it is ready rather than when the whole batch is.
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Loads a table through the cache and solves it.
+     *
+     * @param path      the table file
+     * @param algorithm dynamic, bruteforce or divideconquer
+     * @param posts     receives the number of posts of the table, for the report
+     * @param index     the index of the table in posts
+     *
+     * @return the cheapest sequence of rentals
+     */
+    private tcss343.Result solve(String path, String algorithm, int[] posts, int index) {
+        CostTable costTable;
+        try {
+            costTable = cache.get(new File(path));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Cannot read " + path + ": " + ex.getMessage(), ex);
+        }
+        posts[index] = costTable.size();
+
+        SolverMetrics.Span span = metrics.startThread("solve", algorithmName(algorithm), path);
+        CostTable counted = span.count(costTable);
+        tcss343.Result result;
+        switch (algorithm.toLowerCase()) {
+            case "bruteforce":
+                if (costTable.size() > BruteForceEngine.MAX_POSTS) {
+                    throw new IllegalArgumentException(String.format("Brute force supports at most %s posts", BruteForceEngine.MAX_POSTS));
+                }
+                result = tcss343.findCheapestRentalSequenceBruteForce(counted);
+                break;
+            case "divideconquer":
+                result = tcss343.findCheapestRentalSequenceDivideConquerMemoized(counted);
+                break;
+            case "dynamic":
+                result = tcss343.findCheapestRentalSequenceDynamic(counted);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+        return result;
+    }
+
+    /**
+     * Returns the name results of an algorithm are reported under.
+     *
+     * @param algorithm dynamic, bruteforce or divideconquer
+     *
+     * @return the name
+     */
+    private static String algorithmName(String algorithm) {
+        switch (algorithm.toLowerCase()) {
+            case "bruteforce":
+                return "Brute Force Algorithm";
+            case "divideconquer":
+                return "Memoized Divide and Conquer Algorithm";
+            default:
+                return "Dynamic Programming Algorithm";
+        }
+    }
+
+    /**
+     * Writes the statistics of the service as one JSON object.
+     *
+     * @param exchange the request
+     *
+     * @throws IOException if the response cannot be written
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        Arrays.sort(sorted);
+
+        double uptime = (System.nanoTime() - startNanos) / 1e9;
+        String body = String.format("{\"requests\":%s,\"errors\":%s,\"uptimeSeconds\":%.3f,\"throughputPerSecond\":%.1f,"
+                        + "\"p50Millis\":%.3f,\"p99Millis\":%.3f,\"cacheHits\":%s,\"cacheMisses\":%s,\"cachedTables\":%s,\"cachedBytes\":%s}\n",
+                requests.get(), errors.get(), uptime, requests.get() / uptime,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                cache.hits(), cache.misses(), cache.tables(), cache.bytes());
+        respond(exchange, 200, body);
+    }
+
+    /**
+     * Stops the service after answering.
+     *
+     * @param exchange the request
+     *
+     * @throws IOException if the response cannot be written
+     */
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "{\"error\":\"Expected POST\"}\n");
+            return;
+        }
+
+        respond(exchange, 200, "{\"stopping\":true}\n");
+        // Stop from another thread so this exchange can finish.
+        new Thread(this::stop).start();
+    }
+
+    /**
+     * Records the latency of a solved line.
+     *
+     * @param nanos the latency
+     */
+    private void recordLatency(long nanos) {
+        requests.incrementAndGet();
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = nanos;
+        }
+    }
+
+    /**
+     * Returns the value below which a fraction of the sorted values lie, by the nearest rank.
+     *
+     * @param sorted   the sorted values
+     * @param fraction the fraction from 0 to 1
+     *
+     * @return the percentile, 0 when there are no values
+     */
+    static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(Math.min(rank, sorted.length - 1), 0)];
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Parsed tables kept in least recently used order within a memory budget.
+     *
+     * A table is keyed by its path, modification time and length. Requests for a table that is
+     * being loaded wait for that load instead of parsing the file again.
+     */
+    static final class TableCache {
+
+        private final long budget;
+        private final LinkedHashMap<String, CompletableFuture<CostTable>> tables = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<String, Long> footprints = new LinkedHashMap<>();
+        private long bytes;
+        private long hits;
+        private long misses;
+
+        TableCache(long budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Returns the table of a file, parsing it if it is not cached or changed on disk.
+         *
+         * @param file the table file
+         *
+         * @return the table
+         *
+         * @throws IOException if the file cannot be read
+         */
+        CostTable get(File file) throws IOException {
+            if (!file.isFile()) {
+                throw new IOException("No such file");
+            }
+
+            String key = file.getAbsolutePath() + '\u0000' + file.lastModified() + '\u0000' + file.length();
+            CompletableFuture<CostTable> future;
+            boolean load = false;
+            synchronized (this) {
+                future = tables.get(key);
+                if (future == null) {
+                    // An older version of the file will not be asked for again.
+                    String path = file.getAbsolutePath() + '\u0000';
+                    Iterator<String> keys = tables.keySet().iterator();
+                    while (keys.hasNext()) {
+                        String stale = keys.next();
+                        if (stale.startsWith(path) && footprints.containsKey(stale)) {
+                            keys.remove();
+                            bytes -= footprints.remove(stale);
+                        }
+                    }
+
+                    future = new CompletableFuture<>();
+                    tables.put(key, future);
+                    misses += 1;
+                    load = true;
+                } else {
+                    hits += 1;
+                }
+            }
+
+            if (load) {
+                try {
+                    CostTable costTable = tcss343.readCostTableFromFile(file.getPath());
+                    synchronized (this) {
+                        footprints.put(key, costTable.footprintBytes());
+                        bytes += costTable.footprintBytes();
+                        evict(key);
+                    }
+                    future.complete(costTable);
+                } catch (IOException | RuntimeException ex) {
+                    synchronized (this) {
+                        tables.remove(key);
+                    }
+                    future.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
+
+            try {
+                return future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + file, ex);
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+            }
+        }
+
+        /**
+         * Drops the least recently used loaded tables until the cache is within its budget,
+         * never dropping the table that was just loaded.
+         *
+         * @param keep the key of the table that was just loaded
+         */
+        private void evict(String keep) {
+            Iterator<Map.Entry<String, CompletableFuture<CostTable>>> iterator = tables.entrySet().iterator();
+            while (bytes > budget && iterator.hasNext()) {
+                Map.Entry<String, CompletableFuture<CostTable>> entry = iterator.next();
+                Long footprint = footprints.get(entry.getKey());
+                if (entry.getKey().equals(keep) || footprint == null) {
+                    continue;
+                }
+
+                iterator.remove();
+                footprints.remove(entry.getKey());
+                bytes -= footprint;
+            }
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized int tables() {
+            return tables.size();
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
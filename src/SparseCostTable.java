@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * A cost table that only stores the rentals that are offered, in compressed sparse row layout.
+ *
+ * The destinations and costs of row r sit at indexes rowStart[r] up to rowStart[r + 1] of the
+ * columns and costs arrays, destinations in increasing order, so a table with E rentals takes
+ * O(n + E) memory instead of a cell for every pair of posts. Rentals that are left out read as
+ * {@link CostTable#UNAVAILABLE}.
+ */
+public final class SparseCostTable extends CostTable {
+
+    private final int n;
+    private final int[] rowStart;
+    private final int[] columns;
+    private final long[] costs;
+    private final Width width;
+
+    /**
+     * Constructor that takes the rows of the table in compressed sparse row layout.
+     *
+     * @param n        the dimension
+     * @param rowStart the index of the first rental of each row, followed by the number of rentals
+     * @param columns  the destination of each rental, increasing within a row
+     * @param costs    the cost of each rental
+     */
+    SparseCostTable(int n, int[] rowStart, int[] columns, long[] costs) {
+        if (n < 0 || rowStart.length != n + 1 || columns.length != costs.length || rowStart[n] != columns.length) {
+            throw new IllegalArgumentException("Invalid sparse table of dimension " + n);
+        }
+
+        long maxValue = 0;
+        for (int row = 0; row < n; row++) {
+            for (int k = rowStart[row]; k < rowStart[row + 1]; k++) {
+                if (columns[k] <= row || columns[k] >= n || (k > rowStart[row] && columns[k] <= columns[k - 1])) {
+                    throw new IllegalArgumentException(String.format("Invalid rental from %s to %s", row, columns[k]));
+                }
+                if (costs[k] < 0 || costs[k] == UNAVAILABLE) {
+                    throw new IllegalArgumentException(String.format("Invalid cost %s from %s to %s", costs[k], row, columns[k]));
+                }
+                maxValue = Math.max(maxValue, costs[k]);
+            }
+        }
+
+        this.n = n;
+        this.rowStart = rowStart;
+        this.columns = columns;
+        this.costs = costs;
+        this.width = Width.forMaximum(maxValue);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public long get(int row, int column) {
+        if (column <= row) {
+            return 0;
+        }
+
+        int k = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], column);
+        return k < 0 ? UNAVAILABLE : costs[k];
+    }
+
+    @Override
+    public void readRow(int row, int from, int to, long[] dest, int offset) {
+        if (to <= from) {
+            return;
+        }
+
+        Arrays.fill(dest, offset, offset + to - from, UNAVAILABLE);
+        int k = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], from);
+        for (k = k < 0 ? -k - 1 : k; k < rowStart[row + 1] && columns[k] < to; k++) {
+            dest[offset + columns[k] - from] = costs[k];
+        }
+    }
+
+    @Override
+    public int readAvailable(int row, int[] columns, long[] costs) {
+        int from = rowStart[row];
+        int count = rowStart[row + 1] - from;
+        System.arraycopy(this.columns, from, columns, 0, count);
+        System.arraycopy(this.costs, from, costs, 0, count);
+        return count;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public long availableCount() {
+        return columns.length;
+    }
+
+    @Override
+    public Width width() {
+        return width;
+    }
+
+    @Override
+    public long footprintBytes() {
+        return align(12 + 4 + 4 * 4) + align(16 + (long) Integer.BYTES * rowStart.length)
+                + align(16 + (long) Integer.BYTES * columns.length) + align(16 + (long) Long.BYTES * costs.length);
+    }
+}
@@ -0,0 +1,619 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses tables saved as tab separated text straight from the bytes of the file.
+ *
+ * The file is split into chunks that end on a newline and each chunk is read on its own through
+ * positional reads of the channel into a large byte array, so the chunks are parsed in parallel on
+ * a fork-join pool. Numbers are accumulated digit by digit without creating strings. The first
+ * pass checks every cell, counts the rows of each chunk and finds the largest number; once the
+ * rows before each chunk are known and the table is allocated, the second pass stores the strict
+ * upper triangle. Cells on or below the diagonal may be numbers or "NA" and are skipped. Every row
+ * must have as many cells as there are rows, so a ragged or truncated file is rejected instead of
+ * leaving zero costs in the table. Blank lines at the end of the file are ignored.
+ *
+ * "NA" after the diagonal marks a rental that is not offered. When the file has more "NA" cells
+ * than the lower triangle holds, or a dense parse runs into one, the second pass collects only the
+ * rentals that are offered into a {@link SparseCostTable} instead.
+ */
+public final class TextTableParser {
+
+    /**
+     * Smallest chunk, so small files are parsed by a single task.
+     */
+    static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Largest chunk, so the work stays spread over the threads on very large files.
+     */
+    static final int MAX_CHUNK_BYTES = 1 << 26;
+
+    /**
+     * Size of the buffer a chunk is read through. It grows when a single row is longer.
+     */
+    static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Numbers with more digits could overflow a long.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private TextTableParser() {
+    }
+
+    /**
+     * Parses a text table on the common fork-join pool.
+     *
+     * @param file the text file
+     *
+     * @return the table, packed using the narrowest width that holds its largest number, or sparse
+     * when some rentals are not offered
+     *
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public static CostTable parse(File file) throws IOException {
+        return parse(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a text table.
+     *
+     * @param file the text file
+     * @param pool the pool the chunks are parsed on
+     *
+     * @return the table, packed using the narrowest width that holds its largest number, or sparse
+     * when some rentals are not offered
+     *
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public static CostTable parse(File file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = split(channel, pool.getParallelism());
+            int chunks = bounds.length - 1;
+
+            // Check the cells, count the rows and find the largest number of every chunk.
+            List<Callable<Scanner>> scans = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                Scanner scanner = new Scanner(file);
+                long start = bounds[c];
+                long end = bounds[c + 1];
+                scans.add(() -> {
+                    scanner.read(channel, start, end);
+                    return scanner;
+                });
+            }
+            List<Scanner> summaries = invokeAll(pool, scans);
+
+            long rows = 0;
+            long dimension = -1;
+            long maxValue = 0;
+            long missing = 0;
+            long[] firstRows = new long[chunks];
+            for (int c = 0; c < chunks; c++) {
+                Scanner summary = summaries.get(c);
+                firstRows[c] = rows;
+                rows += summary.rows;
+                maxValue = Math.max(maxValue, summary.maxValue);
+                missing += summary.missing;
+                if (summary.rows == 0) {
+                    continue;
+                }
+                if (dimension >= 0 && summary.cells != dimension) {
+                    throw new IOException(String.format("Row %s has %s cells, expected %s: %s", firstRows[c], summary.cells, dimension, file));
+                }
+                dimension = summary.cells;
+            }
+
+            if (rows == 0) {
+                return PackedCostTable.allocate(0, 0);
+            }
+            if (rows != dimension) {
+                throw new IOException(String.format("Table has %s rows of %s cells: %s", rows, dimension, file));
+            }
+
+            // Only the lower triangle can hold this many "NA" cells in a dense table.
+            if (missing > PackedCostTable.cellCount((int) dimension)) {
+                return collect(channel, pool, bounds, firstRows, summaries, (int) dimension, file);
+            }
+
+            // Store the upper triangle, every chunk knowing the row it starts at.
+            PackedCostTable costTable = PackedCostTable.allocate((int) dimension, maxValue);
+            List<Callable<Filler>> fills = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                Filler filler = new Filler(costTable, (int) firstRows[c], file);
+                long start = bounds[c];
+                long end = bounds[c + 1];
+                fills.add(() -> {
+                    filler.read(channel, start, end);
+                    return filler;
+                });
+            }
+            try {
+                invokeAll(pool, fills);
+            } catch (MissingCostException ex) {
+                return collect(channel, pool, bounds, firstRows, summaries, (int) dimension, file);
+            }
+
+            return costTable;
+        }
+    }
+
+    /**
+     * Second pass of a sparse table: collects the rentals offered by every chunk and joins them
+     * into compressed sparse rows.
+     *
+     * @param channel   the file
+     * @param pool      the pool the chunks are parsed on
+     * @param bounds    the offset each chunk starts at, followed by the size of the file
+     * @param firstRows the row each chunk starts at
+     * @param summaries the first pass over each chunk
+     * @param n         the dimension of the table
+     * @param file      the file, for error messages
+     *
+     * @return the sparse table
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private static SparseCostTable collect(FileChannel channel, ForkJoinPool pool, long[] bounds, long[] firstRows,
+                                           List<Scanner> summaries, int n, File file) throws IOException {
+        int chunks = bounds.length - 1;
+        List<Callable<Collector>> collects = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            Collector collector = new Collector((int) firstRows[c], (int) summaries.get(c).rows, file);
+            long start = bounds[c];
+            long end = bounds[c + 1];
+            collects.add(() -> {
+                collector.read(channel, start, end);
+                return collector;
+            });
+        }
+        List<Collector> collectors = invokeAll(pool, collects);
+
+        long total = 0;
+        for (Collector collector : collectors) {
+            total += collector.count;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many rentals for a sparse table: " + file);
+        }
+
+        int[] rowStart = new int[n + 1];
+        int[] columns = new int[(int) total];
+        long[] costs = new long[(int) total];
+        int offset = 0;
+        for (Collector collector : collectors) {
+            System.arraycopy(collector.columns, 0, columns, offset, collector.count);
+            System.arraycopy(collector.costs, 0, costs, offset, collector.count);
+            for (int k = 0; k < collector.rowCounts.length; k++) {
+                rowStart[collector.firstRow + k] = offset;
+                offset += collector.rowCounts[k];
+            }
+        }
+        rowStart[n] = offset;
+
+        return new SparseCostTable(n, rowStart, columns, costs);
+    }
+
+    /**
+     * Splits a file into chunks of about the same size that each end right after a newline, or at
+     * the end of the last row.
+     *
+     * @param channel     the file
+     * @param parallelism the number of threads parsing the chunks
+     *
+     * @return the offset each chunk starts at, followed by the end of the last row
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] split(FileChannel channel, int parallelism) throws IOException {
+        long size = lastRowEnd(channel);
+        // A few chunks per thread even out the rows of different lengths.
+        long target = Math.min(Math.max(size / (parallelism * 4L), MIN_CHUNK_BYTES), MAX_CHUNK_BYTES);
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long position = target;
+        while (position < size) {
+            long newline = -1;
+            for (long from = position; newline < 0 && from < size; from += buffer.limit()) {
+                buffer.clear();
+                channel.read(buffer, from);
+                buffer.flip();
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        newline = from + i;
+                        break;
+                    }
+                }
+            }
+
+            if (newline < 0 || newline + 1 >= size) {
+                break;
+            }
+            bounds.add(newline + 1);
+            position = newline + 1 + target;
+        }
+        bounds.add(size);
+
+        long[] offsets = new long[bounds.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = bounds.get(i);
+        }
+        return offsets;
+    }
+
+    /**
+     * Finds the end of the last row, leaving out the blank lines after it.
+     *
+     * @param channel the file
+     *
+     * @return the offset of the newline after the last row, or the size of the file if there is none
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private static long lastRowEnd(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long to = end; to > 0; to -= buffer.limit()) {
+            long from = Math.max(to - buffer.capacity(), 0);
+            buffer.clear().limit((int) (to - from));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file at byte " + (from + buffer.position()));
+                }
+            }
+
+            // Walk back over the blank lines, the first newline after the last cell ends the row.
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    end = from + i;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    return end;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Runs tasks on a pool and waits for all of them.
+     *
+     * @param pool  the pool
+     * @param tasks the tasks
+     * @param <T>   the type of the results
+     *
+     * @return the results in the order of the tasks
+     *
+     * @throws IOException if a task failed
+     */
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            // A single chunk is parsed on the calling thread.
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+                return results;
+            }
+
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (java.util.concurrent.ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Failed to parse a table", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing a table", ex);
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Failed to parse a table", ex);
+        }
+    }
+
+    /**
+     * Reads a chunk through a buffer and hands it over a run of whole rows at a time.
+     */
+    private abstract static class ChunkReader {
+
+        /**
+         * Reads the chunk.
+         *
+         * @param channel the file
+         * @param start   the offset the chunk starts at
+         * @param end     the offset the chunk ends at
+         *
+         * @throws IOException if the file cannot be read or a row is not valid
+         */
+        final void read(FileChannel channel, long start, long end) throws IOException {
+            // One byte more than is ever read, for the newline written after the last row.
+            byte[] buffer = new byte[(int) Math.min(BUFFER_BYTES, Math.max(end - start, 1)) + 1];
+            int carry = 0;
+            long position = start;
+
+            while (position < end) {
+                ByteBuffer target = ByteBuffer.wrap(buffer, carry, (int) Math.min(buffer.length - 1 - carry, end - position));
+                while (target.hasRemaining()) {
+                    int read = channel.read(target, position + (target.position() - carry));
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of file at byte " + (position + target.position() - carry));
+                    }
+                }
+                int filled = target.position();
+                long bufferStart = position - carry;
+                position += filled - carry;
+
+                // Only whole rows are handed over, the partial row at the end is carried to the next read.
+                int rowsEnd = filled;
+                if (position < end) {
+                    while (rowsEnd > 0 && buffer[rowsEnd - 1] != '\n') {
+                        rowsEnd--;
+                    }
+                }
+
+                if (rowsEnd == 0) {
+                    byte[] larger = new byte[buffer.length * 2 - 1];
+                    System.arraycopy(buffer, 0, larger, 0, filled);
+                    buffer = larger;
+                    carry = filled;
+                    continue;
+                }
+
+                /*
+                Every run of rows is followed by a newline, even the last row of a file that does not
+                end with one, so the loops over the cells never need to check for the end of the run.
+                 */
+                byte next = buffer[rowsEnd];
+                buffer[rowsEnd] = '\n';
+                rows(buffer, rowsEnd, bufferStart);
+                buffer[rowsEnd] = next;
+                carry = filled - rowsEnd;
+                System.arraycopy(buffer, rowsEnd, buffer, 0, carry);
+            }
+        }
+
+        /**
+         * Handles a run of whole rows.
+         *
+         * @param bytes  the buffer, starting at a row
+         * @param length the number of bytes of whole rows, followed by a newline
+         * @param offset the offset of the buffer in the file, for error messages
+         *
+         * @throws IOException if a row is not valid
+         */
+        abstract void rows(byte[] bytes, int length, long offset) throws IOException;
+    }
+
+    /**
+     * First pass: checks every cell, counts the rows and cells and finds the largest number.
+     */
+    private static final class Scanner extends ChunkReader {
+
+        private final File file;
+        private long rows;
+        private long cells = -1;
+        private long maxValue;
+        private long missing;
+
+        Scanner(File file) {
+            this.file = file;
+        }
+
+        @Override
+        void rows(byte[] bytes, int length, long offset) throws IOException {
+            long maxValue = this.maxValue;
+            int i = 0;
+            while (i < length) {
+                int rowStart = i;
+                long count = 0;
+                byte b;
+                do {
+                    int start = i;
+                    long value = 0;
+                    while ((b = bytes[i]) >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        i++;
+                    }
+
+                    if (i == start) {
+                        if (b == 'N' && bytes[i + 1] == 'A') {
+                            i += 2;
+                            missing += 1;
+                        } else {
+                            throw new IOException(String.format("Invalid cell at byte %s: %s", offset + start, file));
+                        }
+                    } else if (i - start > MAX_DIGITS) {
+                        throw new IOException(String.format("Cost is too large at byte %s: %s", offset + start, file));
+                    } else if (value > maxValue) {
+                        maxValue = value;
+                    }
+                    count += 1;
+
+                    // A cell ends with a tab, a newline, or a carriage return and newline.
+                    b = bytes[i++];
+                    if (b == '\r' && bytes[i] == '\n') {
+                        b = bytes[i++];
+                    }
+                    if (b != '\t' && b != '\n') {
+                        throw new IOException(String.format("Invalid cell at byte %s: %s", offset + start, file));
+                    }
+                } while (b == '\t');
+
+                if (cells >= 0 && count != cells) {
+                    throw new IOException(String.format("Row at byte %s has %s cells, expected %s: %s", offset + rowStart, count, cells, file));
+                }
+                cells = count;
+                rows += 1;
+            }
+            this.maxValue = maxValue;
+        }
+    }
+
+    /**
+     * Second pass: stores the cells after the diagonal. The rows were already checked by the
+     * {@link Scanner}.
+     */
+    private static final class Filler extends ChunkReader {
+
+        private final PackedCostTable costTable;
+        private final File file;
+        private int row;
+
+        Filler(PackedCostTable costTable, int firstRow, File file) {
+            this.costTable = costTable;
+            this.file = file;
+            this.row = firstRow;
+        }
+
+        @Override
+        void rows(byte[] bytes, int length, long offset) throws IOException {
+            int i = 0;
+            while (i < length) {
+                int column = 0;
+                byte b;
+
+                // Cells on or below the diagonal are not stored.
+                while (column <= row && (b = bytes[i]) != '\n' && b != '\r') {
+                    if (b == '\t') {
+                        column += 1;
+                    }
+                    i++;
+                }
+
+                while (column > row) {
+                    if (bytes[i] == 'N') {
+                        throw new MissingCostException(String.format("Missing cost at row %s, column %s: %s", row, column, file));
+                    }
+
+                    long value = 0;
+                    while ((b = bytes[i]) >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        i++;
+                    }
+                    costTable.set(row, column, value);
+
+                    if (b != '\t') {
+                        break;
+                    }
+                    i++;
+                    column += 1;
+                }
+
+                // Skip the end of the row.
+                while (bytes[i] != '\n') {
+                    i++;
+                }
+                i++;
+                row += 1;
+            }
+        }
+    }
+
+    /**
+     * Second pass of a sparse table: keeps the rentals after the diagonal that are not "NA". The
+     * rows were already checked by the {@link Scanner}.
+     */
+    private static final class Collector extends ChunkReader {
+
+        private final int firstRow;
+        private final int[] rowCounts;
+        private final File file;
+        private int[] columns = new int[1024];
+        private long[] costs = new long[1024];
+        private int count;
+        private int row;
+
+        Collector(int firstRow, int rows, File file) {
+            this.firstRow = firstRow;
+            this.rowCounts = new int[rows];
+            this.file = file;
+            this.row = firstRow;
+        }
+
+        @Override
+        void rows(byte[] bytes, int length, long offset) throws IOException {
+            int i = 0;
+            while (i < length) {
+                int column = 0;
+                int start = count;
+                byte b;
+
+                // Cells on or below the diagonal are not stored.
+                while (column <= row && (b = bytes[i]) != '\n' && b != '\r') {
+                    if (b == '\t') {
+                        column += 1;
+                    }
+                    i++;
+                }
+
+                while (column > row) {
+                    if (bytes[i] == 'N') {
+                        i += 2;
+                    } else {
+                        long value = 0;
+                        while ((b = bytes[i]) >= '0' && b <= '9') {
+                            value = value * 10 + (b - '0');
+                            i++;
+                        }
+                        add(column, value);
+                    }
+
+                    if (bytes[i] != '\t') {
+                        break;
+                    }
+                    i++;
+                    column += 1;
+                }
+
+                // Skip the end of the row.
+                while (bytes[i] != '\n') {
+                    i++;
+                }
+                i++;
+                rowCounts[row - firstRow] = count - start;
+                row += 1;
+            }
+        }
+
+        private void add(int column, long cost) throws IOException {
+            if (count == columns.length) {
+                if (count > Integer.MAX_VALUE / 2 - 8) {
+                    throw new IOException("Too many rentals for a sparse table: " + file);
+                }
+                columns = Arrays.copyOf(columns, count * 2);
+                costs = Arrays.copyOf(costs, count * 2);
+            }
+            columns[count] = column;
+            costs[count] = cost;
+            count += 1;
+        }
+    }
+
+    /**
+     * Thrown by the dense second pass when a rental after the diagonal is "NA".
+     */
+    private static final class MissingCostException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MissingCostException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dynamic programming solver that finds the k cheapest distinct sequences of rentals.
+ *
+ * Every post keeps its k cheapest plans instead of one, each recorded as the post it came from
+ * and which of that post's plans it extends. The plans of a post are found by merging the sorted
+ * plan lists of every earlier post with a heap holding the next plan of each list, so only k plans
+ * are taken from the merge and the work per post is O(n + k log n) on top of reading the column.
+ */
+public final class TopKSolver {
+
+    private TopKSolver() {
+    }
+
+    /**
+     * Finds the k cheapest distinct sequences of rentals, cheapest first. Sequences with the
+     * same cost are ordered by their last rental, the earlier post first, so the first sequence
+     * is the one the standard dynamic programming algorithm finds.
+     *
+     * @param costTable the cost chart
+     * @param k         the number of sequences to find
+     *
+     * @return up to k sequences, fewer if the table has fewer distinct sequences
+     */
+    public static List<tcss343.Result> solve(CostTable costTable, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Invalid number of sequences: " + k);
+        }
+
+        int n = costTable.size();
+        if ((long) n * k > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Too many plans to keep for %s posts: %s", n, k));
+        }
+
+        List<tcss343.Result> results = new ArrayList<>();
+        if (n == 0) {
+            return results;
+        }
+
+        // Plan r of post j is stored at index j * k + r.
+        long[] cost = new long[n * k];
+        int[] from = new int[n * k];
+        int[] fromRank = new int[n * k];
+        int[] count = new int[n];
+
+        cost[0] = 0;
+        from[0] = -1;
+        count[0] = 1;
+
+        Heap heap = new Heap(n);
+        for (int j = 1; j < n; j++) {
+            // Start the merge with the cheapest plan of every earlier post.
+            heap.clear();
+            for (int i = 0; i < j; i++) {
+                heap.add(cost[i * k] + costTable.get(i, j), i, 0);
+            }
+            heap.heapify();
+
+            while (count[j] < k && heap.size() > 0) {
+                int i = heap.topPost();
+                int r = heap.topRank();
+                int index = j * k + count[j];
+                cost[index] = heap.topValue();
+                from[index] = i;
+                fromRank[index] = r;
+                count[j] += 1;
+
+                // Replace the plan taken with the next plan of the same post.
+                if (r + 1 < count[i]) {
+                    heap.replaceTop(cost[i * k + r + 1] + costTable.get(i, j), i, r + 1);
+                } else {
+                    heap.removeTop();
+                }
+            }
+        }
+
+        // Follow each plan of the last post back to the start.
+        for (int r = 0; r < count[n - 1]; r++) {
+            int length = 0;
+            for (int post = n - 1, rank = r; post != -1; length++) {
+                int index = post * k + rank;
+                post = from[index];
+                rank = fromRank[index];
+            }
+
+            // Fill the sequence from the back.
+            int[] sequence = new int[length];
+            for (int post = n - 1, rank = r, s = length - 1; post != -1; s--) {
+                sequence[s] = post;
+                int index = post * k + rank;
+                post = from[index];
+                rank = fromRank[index];
+            }
+
+            results.add(new tcss343.Result(sequence, cost[(n - 1) * k + r]));
+        }
+
+        return results;
+    }
+
+    /**
+     * Binary min heap of plans ordered by cost, then post, then rank, stored in parallel arrays.
+     */
+    private static final class Heap {
+
+        private final long[] values;
+        private final int[] posts;
+        private final int[] ranks;
+        private int size;
+
+        private Heap(int capacity) {
+            values = new long[capacity];
+            posts = new int[capacity];
+            ranks = new int[capacity];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        /**
+         * Appends a plan without restoring the heap order, see {@link #heapify()}.
+         */
+        private void add(long value, int post, int rank) {
+            values[size] = value;
+            posts[size] = post;
+            ranks[size] = rank;
+            size += 1;
+        }
+
+        private void heapify() {
+            for (int index = size / 2 - 1; index >= 0; index--) {
+                siftDown(index);
+            }
+        }
+
+        private long topValue() {
+            return values[0];
+        }
+
+        private int topPost() {
+            return posts[0];
+        }
+
+        private int topRank() {
+            return ranks[0];
+        }
+
+        private void replaceTop(long value, int post, int rank) {
+            values[0] = value;
+            posts[0] = post;
+            ranks[0] = rank;
+            siftDown(0);
+        }
+
+        private void removeTop() {
+            size -= 1;
+            if (size > 0) {
+                move(size, 0);
+                siftDown(0);
+            }
+        }
+
+        private boolean less(int a, int b) {
+            if (values[a] != values[b]) {
+                return values[a] < values[b];
+            }
+            if (posts[a] != posts[b]) {
+                return posts[a] < posts[b];
+            }
+            return ranks[a] < ranks[b];
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && less(left, smallest)) {
+                    smallest = left;
+                }
+                if (right < size && less(right, smallest)) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+
+        private void move(int source, int target) {
+            values[target] = values[source];
+            posts[target] = posts[source];
+            ranks[target] = ranks[source];
+        }
+
+        private void swap(int a, int b) {
+            long value = values[a];
+            int post = posts[a];
+            int rank = ranks[a];
+            move(b, a);
+            values[b] = value;
+            posts[b] = post;
+            ranks[b] = rank;
+        }
+    }
+}
@@ -4,12 +4,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.stream.IntStream;
 
 /**
  * TCSS 343 Assignment 4.
@@ -24,9 +21,9 @@ import java.util.Random;
 public class tcss343 {
 
     /**
-     * Random generator that uses the time at application start as the seed.
+     * Constant used to spread the cell coordinates before they are mixed with the seed.
      */
-    private static final Random RANDOM_GENERATOR = new Random(System.currentTimeMillis());
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
 
     /**
      * Minimum value we to be returned by the generator.
@@ -38,11 +35,6 @@ public class tcss343 {
      */
     private static final int MAX_BOUND = 1000;
 
-    /**
-     * BigInteger for the value 2.
-     */
-    private static final BigInteger TWO = new BigInteger("2");
-
     /**
      * Separator used in print messages.
      */
@@ -69,16 +61,209 @@ public class tcss343 {
     private static boolean testGenerated = false;
 
     /**
-     * Generate a random integer from MIN_BOUND to MAX_BOUND (inclusive).
+     * Whether or not to solve files with the streaming dynamic programming algorithm
+     * instead of loading them.
+     */
+    private static boolean streamFiles = false;
+
+    /**
+     * Whether or not to save generated tables in the binary format instead of text.
+     */
+    private static boolean saveBinary = false;
+
+    /**
+     * Whether or not to save generated tables in the compressed format.
+     */
+    private static boolean saveCompressed = false;
+
+    /**
+     * Whether or not to solve files in tiles through a bounded buffer pool instead of loading them.
+     * Text files too large for the heap are always solved this way.
+     */
+    private static boolean outOfCore = false;
+
+    /**
+     * Number of rows and columns in a tile of the out-of-core solver.
+     */
+    private static int tileSize = OutOfCoreSolver.DEFAULT_TILE_SIZE;
+
+    /**
+     * Memory budget of the buffer pool of the out-of-core solver.
+     */
+    private static long poolBytes = OutOfCoreSolver.DEFAULT_POOL_BYTES;
+
+    /**
+     * Report every result is also written to, null to only print to the console.
+     */
+    private static ReportWriter reportWriter = null;
+
+    /**
+     * Whether or not to let the planner pick a single algorithm for each table instead of the limits.
+     */
+    private static boolean autoPlan = false;
+
+    /**
+     * Time in milliseconds the exponential algorithms may run before returning their best sequence, 0 for no limit.
+     */
+    private static long deadlineMillis = 0;
+
+    /**
+     * Whether or not to measure the planner calibration again instead of using the cached one.
+     */
+    private static boolean recalibrate = false;
+
+    /**
+     * The planner, loaded the first time a table is planned.
+     */
+    private static AutoPlanner planner = null;
+
+    /**
+     * Number of threads solving tables in batch and service mode and searching a checkpointed brute force.
+     */
+    private static int batchThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of threads loading tables in batch mode.
+     */
+    private static int batchLoaders = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Memory budget of the tables in flight in batch mode.
+     */
+    private static long batchMemory = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * File the brute force search saves its progress to, null for no checkpoints.
+     */
+    private static String checkpointFile = null;
+
+    /**
+     * Whether or not to resume the brute force search from the checkpoint file.
+     */
+    private static boolean resumeCheckpoint = false;
+
+    /**
+     * Time in milliseconds between two saves of the brute force checkpoint.
+     */
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * Memory budget of the table cache of the solver service.
+     */
+    private static long serviceCacheBytes = SolverService.DEFAULT_CACHE_BYTES;
+
+    /**
+     * Number of requests the load generator sends.
+     */
+    private static int loadRequests = 1000;
+
+    /**
+     * Number of requests the load generator keeps in flight.
+     */
+    private static int loadConcurrency = 8;
+
+    /**
+     * Number of tables the load generator asks for per request.
+     */
+    private static int loadBatchSize = 1;
+
+    /**
+     * Metrics every generator, reader and solver is measured with, disabled unless -metrics: is given.
+     */
+    private static SolverMetrics metrics = SolverMetrics.disabled();
+
+    /**
+     * What is being tested, written with each result to the report.
+     */
+    private static String reportSource = "";
+
+    /**
+     * Whether or not to use the memoized divide and conquer algorithm.
+     */
+    private static boolean memoizeDivideConquer = false;
+
+    /**
+     * Whether or not to solve Monge tables with the O(n log n) dynamic programming algorithm.
+     */
+    private static boolean mongeFastPath = false;
+
+    /**
+     * Whether or not to use the parallel blocked dynamic programming algorithm.
+     */
+    private static boolean parallelDynamic = false;
+
+    /**
+     * Seed used to generate tables, the time at application start unless set with -seed:.
+     */
+    private static long seed = System.currentTimeMillis();
+
+    /**
+     * Number of cheapest sequences to find for each table, 0 to skip.
+     */
+    private static int topK = 0;
+
+    /**
+     * Largest number of rentals to find the cheapest sequence for, 0 to skip.
+     */
+    private static int maxHops = 0;
+
+    /**
+     * Origins and destinations of the route queries to run on each table, null if none.
+     */
+    private static int[] queryOrigins = null;
+    private static int[] queryDestinations = null;
+
+    /**
+     * Memory budget of the route query cache in bytes.
+     */
+    private static long queryCacheBudget = RouteQueryEngine.DEFAULT_MEMORY_BUDGET;
+
+    /**
+     * Whether or not to compute every origin of the route query cache before answering the queries.
+     */
+    private static boolean queryPrecompute = false;
+
+    /**
+     * Cells and new prices of the price updates to apply to each table, null if none.
+     */
+    private static int[] updateRows = null;
+    private static int[] updateColumns = null;
+    private static long[] updateValues = null;
+
+    /**
+     * Generate a random integer from MIN_BOUND to MAX_BOUND (inclusive) for a cell of a table.
+     * The integer only depends on the seed and the cell, so cells can be generated in any order
+     * and on any number of threads and still produce the same table.
+     *
+     * @param seed   the seed of the table
+     * @param row    the row index
+     * @param column the column index
      *
      * @return a random integer
      */
-    private static int generateInteger() {
-        return RANDOM_GENERATOR.nextInt((MAX_BOUND - MIN_BOUND) + 1) + MIN_BOUND;
+    static int generateInteger(long seed, int row, int column) {
+        long cell = ((long) row << 32) | (column & 0xFFFFFFFFL);
+        long random = mix(seed ^ mix(cell * GOLDEN_GAMMA + GOLDEN_GAMMA));
+        // Scale the high 32 bits into the range instead of taking a remainder to avoid bias.
+        return (int) (((random >>> 32) * ((MAX_BOUND - MIN_BOUND) + 1)) >>> 32) + MIN_BOUND;
+    }
+
+    /**
+     * Scrambles the bits of a value (the SplitMix64 finalizer).
+     *
+     * @param z the value
+     *
+     * @return the scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
-     * Reads a cost table from file.
+     * Reads a cost table from file. Binary tables are memory mapped, compressed tables are
+     * decoded and anything else is parsed as tab separated text, in parallel chunks.
      *
      * @param target the target file to read from
      *
@@ -86,35 +271,36 @@ public class tcss343 {
      *
      * @throws IOException
      */
-    private static Integer[][] readCostTableFromFile(String target) throws IOException {
+    static CostTable readCostTableFromFile(String target) throws IOException {
         File file = new File(target);
-        Integer[][] costTable = null;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            int row = 0;
-
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split("\t");
-                if (costTable == null) {
-                    costTable = new Integer[parts.length][parts.length];
-                }
-
-                for (int column = row; column < parts.length; column++) {
-                    costTable[row][column] = Integer.parseInt(parts[column]);
-                }
+        if (MappedCostTable.isBinary(file)) {
+            return MappedCostTable.open(file);
+        }
 
-                row += 1;
-            }
+        if (CompressedTableFormat.isCompressed(file)) {
+            return CompressedTableFormat.load(file);
         }
 
-        return costTable;
+        return TextTableParser.parse(file);
     }
 
-    private static Integer[][] generateAndSaveCostTable(int size, GenerationMode mode) {
-        Integer[][] costTable = generateCostTable(size, mode);
-        File file = new File(String.format("./%sCostTable%s.txt", mode.name(), size));
+    /**
+     * Generates a cost table and saves it to file.
+     *
+     * @param size the dimension of the table
+     * @param mode the generation mode
+     *
+     * @return the generated cost table
+     */
+    private static CostTable generateAndSaveCostTable(int size, GenerationMode mode) {
+        SolverMetrics.Span span = metrics.start("generate", mode.name(), "generated:" + size);
+        CostTable costTable = generateCostTable(size, mode);
+        span.finish(size, PackedCostTable.cellCount(size), PackedCostTable.cellCount(size), "cells");
+
+        File file = new File(String.format("./%sCostTable%s.%s", mode.name(), size,
+                saveCompressed ? "rcz" : saveBinary ? "bin" : "txt"));
 
+        span = metrics.start("write", saveCompressed ? "Compressed" : saveBinary ? "Binary" : "Text", file.getPath());
         try {
             if (file.exists()) {
                 file.delete();
@@ -122,104 +308,146 @@ public class tcss343 {
 
             file.createNewFile();
 
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-                for (int i = 0; i < costTable.length; i++) {
-                    for (int j = 0; j < costTable.length; j++) {
-                        if (costTable[i][j] == null) {
-                            bw.append("NA");
-                        } else {
-                            bw.append(String.valueOf(costTable[i][j]));
-                        }
-
-                        if (j < costTable.length - 1) {
-                            bw.append('\t');
-                        }
-                    }
-
-                    if (i < costTable.length - 1) {
-                        bw.append("\n");
-                    }
-                }
+            if (saveCompressed) {
+                CompressedTableFormat.write(costTable, file, mode, true, seed);
+            } else if (saveBinary) {
+                MappedCostTable.write(costTable, file, mode, true, seed);
+            } else {
+                writeCostTableToFile(costTable, file);
             }
         } catch (Exception ex) {
             System.err.println("An error occurred while writing a table to file: " + file.toString());
         }
+        span.finish(size, PackedCostTable.cellCount(size), PackedCostTable.cellCount(size), "cells");
 
         return costTable;
     }
 
     /**
-     * An algorithm to find the cheapest sequence of posts to rent and return from using
-     * the brute force paradigm.
+     * Writes a cost table to file as tab separated text, using "NA" for the lower triangle and for
+     * the rentals a sparse table does not offer.
      *
-     * @param costTable the cost chart
+     * @param costTable the table to write
+     * @param file      the target file
      *
-     * @return the cheapest sequence of rentals
+     * @throws IOException if the file cannot be written
      */
-    private static Result findCheapestRentalSequenceBruteForce(Integer[][] costTable) {
-        /*
-        We first calculate the size of the power set. It is important to use
-        BigInteger because the power set size very quickly exceeds Integer.MAX_VALUE.
-         */
-        BigInteger powerSetSize = TWO.pow(costTable.length);
-        /*
-        Create a counter as a BigInteger to support loops of sizes greater than Integer.MAX_VALUE.
-        Because we need bit costTable.length - 1 to be set we know that our counter can start at
-        2^(costTable.length - 1).
-         */
-        BigInteger counter = TWO.pow(costTable.length - 1);
-
-        List<Integer> cheapestSequence = null;
-        int cheapestCost = -1;
-
-        // Check if counter is even, if so increment by one.
-        if (!counter.testBit(0)) {
-            counter = counter.add(BigInteger.ONE);
-        }
-
-        // Iterate over all odd numbers from 2^(costTable.length - 1) to 2^costTable.length
-        while (counter.compareTo(powerSetSize) < 0) {
-            // Create our sequence list and add the start index as the base case.
-            List<Integer> sequence = new ArrayList<>();
-            sequence.add(0);
-
-            // Keep track of the totalCost and the previously checked post.
-            int totalCost = 0;
-            int previous = 0;
-
-            // Iterate over all posts between the start and end.
-            for (int j = 1; j < costTable.length - 1; j++) {
-                // Check if the bit in the counter is set for post j.
-                if (counter.testBit(j)) {
-                    // Add the cost from the previous post to post j to the total cost.
-                    totalCost += costTable[previous][j];
-                    // Set the previous post to j.
-                    previous = j;
-                    // Add post j to the sequence list.
-                    sequence.add(j);
+    private static void writeCostTableToFile(CostTable costTable, File file) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < costTable.size(); i++) {
+                for (int j = 0; j < costTable.size(); j++) {
+                    if (j < i || costTable.get(i, j) == CostTable.UNAVAILABLE) {
+                        bw.append("NA");
+                    } else {
+                        bw.append(String.valueOf(costTable.get(i, j)));
+                    }
+
+                    if (j < costTable.size() - 1) {
+                        bw.append('\t');
+                    }
+                }
+
+                if (i < costTable.size() - 1) {
+                    bw.append("\n");
                 }
             }
+        }
+    }
+
+    /**
+     * Converts a table between the text, binary and compressed formats. The format written is
+     * chosen by the extension of the target: .bin is binary, .rcz is compressed and .txt, .tsv or
+     * no extension is text. Any other extension is rejected. Converting between text and the
+     * compressed format also compares the size of the two files and how fast each of them decodes.
+     *
+     * @param source the file to convert
+     * @param target the file to write
+     */
+    private static void convertCostTable(String source, String target) {
+        try {
+            File sourceFile = new File(source);
+            File targetFile = new File(target);
+            boolean binarySource = MappedCostTable.isBinary(sourceFile);
+            boolean compressedSource = CompressedTableFormat.isCompressed(sourceFile);
+
+            String name = targetFile.getName();
+            String extension = name.lastIndexOf('.') > 0 ? name.substring(name.lastIndexOf('.') + 1) : "";
+            if (!extension.matches("bin|rcz|txt|tsv|")) {
+                throw new IOException("Unsupported target format ." + extension + ", expected .bin, .rcz, .txt or .tsv: " + target);
+            }
+
+            CostTable costTable = readCostTableFromFile(source);
+            // Carry the generation details of a binary header over.
+            MappedCostTable mapped = binarySource ? (MappedCostTable) costTable : null;
+            if (extension.equals("rcz")) {
+                CompressedTableFormat.write(costTable, targetFile, mapped == null ? null : mapped.mode(),
+                        mapped != null && mapped.isSeeded(), mapped == null ? 0 : mapped.seed());
+            } else if (extension.equals("bin")) {
+                MappedCostTable.write(costTable, targetFile, mapped == null ? null : mapped.mode(),
+                        mapped != null && mapped.isSeeded(), mapped == null ? 0 : mapped.seed());
+            } else {
+                writeCostTableToFile(costTable, targetFile);
+            }
 
-            // Add the cost from the previous post to the end post to the total cost.
-            totalCost += costTable[previous][costTable.length - 1];
-            // Add the end post to the sequence list.
-            sequence.add(costTable.length - 1);
+            System.out.println(String.format("Converted %s to %s (%s bytes to %s bytes)",
+                    source, target, sourceFile.length(), targetFile.length()));
 
-            /*
-            Check if the cheapestCost has yet to be set or if the total cost of the latest sequence
-            is cheaper than the cost of the cheapest sequence.
-             */
-            if (cheapestCost == -1 || totalCost < cheapestCost) {
-                // Set the new cheapest sequence and cheapest cost.
-                cheapestSequence = sequence;
-                cheapestCost = totalCost;
+            boolean textTarget = !extension.equals("bin") && !extension.equals("rcz");
+            if (compressedSource && textTarget) {
+                printCompression(sourceFile, targetFile);
+            } else if (extension.equals("rcz") && !binarySource && !compressedSource) {
+                printCompression(targetFile, sourceFile);
             }
+        } catch (Exception ex) {
+            System.err.println("An error occurred while converting a table: " + ex.getMessage());
+        }
+    }
 
-            // Increment the counter.
-            counter = counter.add(TWO);
+    /**
+     * Prints how much smaller a compressed table is than the same table as text and how fast
+     * each of the two files is decoded into a table, the best of a few loads.
+     *
+     * @param compressed the compressed table
+     * @param text       the same table as tab separated text
+     *
+     * @throws IOException if either file cannot be read
+     */
+    private static void printCompression(File compressed, File text) throws IOException {
+        long cells = 0;
+        long textNanos = Long.MAX_VALUE;
+        long compressedNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            CostTable costTable = readCostTableFromFile(text.getPath());
+            textNanos = Math.min(textNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            CompressedTableFormat.load(compressed);
+            compressedNanos = Math.min(compressedNanos, System.nanoTime() - start);
+            cells = PackedCostTable.cellCount(costTable.size());
         }
 
-        return new Result(cheapestSequence, cheapestCost);
+        StringBuilder builder = new StringBuilder().append("Compression Ratio: %.2fx (%s text bytes to %s compressed bytes, %.2f bits per cell)\n")
+                .append("Text Decode: %.1f MB/s, %.1f M cells/s\n")
+                .append("Compressed Decode: %.1f MB/s, %.1f M cells/s");
+        System.out.println(String.format(builder.toString(),
+                (double) text.length() / compressed.length(), text.length(), compressed.length(),
+                cells == 0 ? 0 : 8.0 * compressed.length() / cells,
+                text.length() * 1e3 / textNanos, cells * 1e3 / textNanos,
+                compressed.length() * 1e3 / compressedNanos, cells * 1e3 / compressedNanos));
+    }
+
+    /**
+     * An algorithm to find the cheapest sequence of posts to rent and return from using
+     * the brute force paradigm. Every subset of the posts between the first and last post is
+     * checked by {@link BruteForceEngine}.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals
+     */
+    static Result findCheapestRentalSequenceBruteForce(CostTable costTable) {
+        return new BruteForceEngine(costTable).solve();
     }
 
     /**
@@ -230,7 +458,7 @@ public class tcss343 {
      *
      * @return the cheapest sequence of rentals
      */
-    private static Result findCheapestRentalSequenceDivideConquer(Integer[][] costTable) {
+    static Result findCheapestRentalSequenceDivideConquer(CostTable costTable) {
         return findCheapestRentalSequenceDivideConquer(costTable, 0, 0);
     }
 
@@ -244,30 +472,152 @@ public class tcss343 {
      *
      * @return the cheapest sequence of rentals starting from the current post to the end
      */
-    private static Result findCheapestRentalSequenceDivideConquer(Integer[][] costTable, int currentIndex, int currentCost) {
-        if (costTable.length - 1 == currentIndex) {
+    private static Result findCheapestRentalSequenceDivideConquer(CostTable costTable, int currentIndex, long currentCost) {
+        if (costTable.size() - 1 == currentIndex) {
             // The end has been reached.
-            List list = new LinkedList();
-            list.add(currentIndex);
-            return new Result(list, currentCost);
+            return new Result(new int[]{currentIndex}, currentCost);
         } else {
             Result cheapestResult = null;
 
             // Check all possible destinations from the current index.
-            for (int i = currentIndex + 1; i < costTable.length; i++) {
-                Result result = findCheapestRentalSequenceDivideConquer(costTable, i, currentCost + costTable[currentIndex][i]);
+            for (int i = currentIndex + 1; i < costTable.size(); i++) {
+                long cost = costTable.get(currentIndex, i);
+                // Skip rentals that are not offered.
+                if (cost == CostTable.UNAVAILABLE) {
+                    continue;
+                }
+
+                Result result = findCheapestRentalSequenceDivideConquer(costTable, i, currentCost + cost);
                 // Check if the result cost less than the current cheapest result.
-                if (cheapestResult == null || result.totalCost < cheapestResult.totalCost) {
+                if (result.hasRoute() && (cheapestResult == null || result.totalCost < cheapestResult.totalCost)) {
                     cheapestResult = result;
                 }
             }
 
+            // No destination leads to the end.
+            if (cheapestResult == null) {
+                return Result.noRoute();
+            }
+
             // Add the current index to the beginning of cheapest result's sequence.
-            cheapestResult.sequence.add(0, currentIndex);
-            return cheapestResult;
+            int[] sequence = new int[cheapestResult.sequence.length + 1];
+            sequence[0] = currentIndex;
+            System.arraycopy(cheapestResult.sequence, 0, sequence, 1, cheapestResult.sequence.length);
+            return new Result(sequence, cheapestResult.totalCost);
         }
     }
 
+    /**
+     * An algorithm to find the cheapest sequence of posts to rent and return from using
+     * the divide and conquer paradigm, solving each suffix of posts only once.
+     *
+     * The recursion is driven by an explicit stack so large tables cannot overflow the thread
+     * stack. The cheapest cost from a post to the end is cached once its suffix is solved, and a
+     * destination is only descended into when the rental to it plus a lower bound on the rest of
+     * the trip could still beat the best plan found for the current post. The sequence matches
+     * {@link #findCheapestRentalSequenceDivideConquer(CostTable)}, ties going to the nearest post.
+     * Rentals a sparse table does not offer are skipped, and so are posts with no plan to the end.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals
+     */
+    static Result findCheapestRentalSequenceDivideConquerMemoized(CostTable costTable) {
+        int n = costTable.size();
+        int last = n - 1;
+        // Cheapest cost from each post to the end and the next post on that plan, valid once solved.
+        long[] suffixCost = new long[n];
+        int[] next = new int[n];
+        // The next destination to check for each post on the stack.
+        int[] cursor = new int[n];
+        boolean[] solved = new boolean[n];
+
+        /*
+        Any plan leaving a post other than the last pays at least the cheapest rental out of it,
+        which is the lower bound used to prune destinations that have not been solved yet. A post
+        with no rental out of it keeps UNAVAILABLE as its bound and is never descended into.
+         */
+        long[] lowerBound = new long[n];
+        long[] row = new long[n];
+        for (int i = 0; i < last; i++) {
+            costTable.readRow(i, i + 1, n, row, 0);
+            long min = Long.MAX_VALUE;
+            for (int k = 0; k < last - i; k++) {
+                min = Math.min(min, row[k]);
+            }
+            lowerBound[i] = min;
+        }
+
+        // The base case is the end itself.
+        solved[last] = true;
+        next[last] = -1;
+
+        // Posts on the stack are strictly increasing, so it never holds more than n posts.
+        int[] stack = new int[n];
+        int top = -1;
+        if (last > 0) {
+            stack[++top] = 0;
+            // Seed the best plan with the direct rental to the end.
+            cursor[0] = 1;
+            suffixCost[0] = costTable.get(0, last);
+            next[0] = last;
+        }
+
+        while (top >= 0) {
+            int i = stack[top];
+            int j = cursor[i];
+
+            if (j == last) {
+                // Every destination has been checked, the direct rental to the end was the seed.
+                solved[i] = true;
+                top -= 1;
+                continue;
+            }
+
+            long cost = costTable.get(i, j);
+            if (cost == CostTable.UNAVAILABLE || (solved[j] && suffixCost[j] == CostTable.UNAVAILABLE)) {
+                // The rental is not offered or there is no plan from j to the end.
+                cursor[i] += 1;
+            } else if (solved[j]) {
+                long candidate = cost + suffixCost[j];
+                // Only the seeded end can be further than j, and nearer posts win ties.
+                if (candidate < suffixCost[i] || (candidate == suffixCost[i] && j < next[i])) {
+                    suffixCost[i] = candidate;
+                    next[i] = j;
+                }
+                cursor[i] += 1;
+            } else if (lowerBound[j] == CostTable.UNAVAILABLE || cost + lowerBound[j] > suffixCost[i]) {
+                // No plan through j can beat the best plan found for i.
+                cursor[i] += 1;
+            } else {
+                // Solve the suffix starting at j before coming back to i.
+                stack[++top] = j;
+                cursor[j] = j + 1;
+                suffixCost[j] = costTable.get(j, last);
+                next[j] = last;
+            }
+        }
+
+        // The direct rental to the end seeded UNAVAILABLE if it is not offered either.
+        if (suffixCost[0] == CostTable.UNAVAILABLE) {
+            return Result.noRoute();
+        }
+
+        // Follow the next posts from the start to count and then fill the sequence.
+        int length = 0;
+        for (int i = 0; i != -1; i = next[i]) {
+            length += 1;
+        }
+
+        int[] sequence = new int[length];
+        int k = 0;
+        for (int i = 0; i != -1; i = next[i]) {
+            sequence[k++] = i;
+        }
+
+        return new Result(sequence, suffixCost[0]);
+    }
+
     /**
      * An algorithm to find the cheapest sequence of posts to rent and return from using
      * the dynamic programming paradigm.
@@ -276,70 +626,276 @@ public class tcss343 {
      *
      * @return the cheapest sequence of rentals
      */
-    private static Result findCheapestRentalSequenceDynamic(Integer[][] costTable) {
-        // Initialize minCost and path arrays with length equal to the number of posts (e.g. cost.length).
-        int[] minCost = new int[costTable.length];
-        int[] path = new int[costTable.length];
+    static Result findCheapestRentalSequenceDynamic(CostTable costTable) {
+        if (costTable.isSparse()) {
+            return findCheapestRentalSequenceSparse(costTable);
+        }
+
+        int n = costTable.size();
+        // Initialize minCost and path arrays with length equal to the number of posts (e.g. cost.size()).
+        long[] minCost = new long[n];
+        int[] path = new int[n];
+        // Buffer for the row currently being relaxed.
+        long[] row = new long[n];
         // Fill minCost with max value.
-        Arrays.fill(minCost, Integer.MAX_VALUE);
+        Arrays.fill(minCost, Long.MAX_VALUE);
         // Initialize the base case (-1 for the end with a cost of 0).
         path[0] = -1;
         minCost[0] = 0;
-        // Iterate over posts 1 to n.
-        for (int j = 1; j < costTable.length; j++) {
-            // Iterate posts 0 to j - 1.
-            for (int i = 0; i < j; i++) {
+        /*
+        Relax every row forward. Once rows 0 to i - 1 have been relaxed minCost[i] is final, and because
+        each column sees its candidates in increasing order of i the path is the same as relaxing column
+        by column. Walking rows keeps the reads sequential in the packed table.
+         */
+        for (int i = 0; i < n - 1; i++) {
+            costTable.readRow(i, i + 1, n, row, 0);
+            long base = minCost[i];
+            // Iterate posts i + 1 to n - 1.
+            for (int j = i + 1; j < n; j++) {
                 /*
                  If the minCost to post i plus the costs from post i to j is less than the
                  minimum cost to point j replace the min cost to j with the new minimum cost
                  and set the path at index j to i.
                   */
-                if (minCost[i] + costTable[i][j] < minCost[j]) {
-                    minCost[j] = minCost[i] + costTable[i][j];
+                long cost = base + row[j - i - 1];
+                if (cost < minCost[j]) {
+                    minCost[j] = cost;
                     path[j] = i;
                 }
             }
         }
 
-        // Initialize our sequence list.
-        List<Integer> sequence = new LinkedList<>();
-        // Initialize index equal to the number of posts minus 1.
-        int i = costTable.length - 1;
-        /*
-        Check if the value at index i of the path array is our sentinel value. If not add the index to
-        our sequence list and update our i to the value.
-         */
-        while (path[i] != -1) {
-            sequence.add(0, i);
+        return reconstructResult(minCost, path);
+    }
+
+    /**
+     * A dynamic programming algorithm for sparse tables that relaxes only the rentals that are
+     * offered, in O(n + E) time for E rentals. Rows are still relaxed in order so the path is the
+     * same as the dense algorithm's, and posts that cannot be reached are never relaxed.
+     *
+     * @param costTable the cost chart
+     *
+     * @return the cheapest sequence of rentals, or no route when the last post cannot be reached
+     */
+    static Result findCheapestRentalSequenceSparse(CostTable costTable) {
+        int n = costTable.size();
+        long[] minCost = new long[n];
+        int[] path = new int[n];
+        // Buffers for the rentals out of the row currently being relaxed.
+        int[] columns = new int[n];
+        long[] costs = new long[n];
+        // UNAVAILABLE doubles as the cost of the posts not reached yet.
+        Arrays.fill(minCost, CostTable.UNAVAILABLE);
+        path[0] = -1;
+        minCost[0] = 0;
+
+        for (int i = 0; i < n - 1; i++) {
+            long base = minCost[i];
+            if (base == CostTable.UNAVAILABLE) {
+                continue;
+            }
+
+            int count = costTable.readAvailable(i, columns, costs);
+            for (int k = 0; k < count; k++) {
+                int j = columns[k];
+                long cost = base + costs[k];
+                if (cost < minCost[j]) {
+                    minCost[j] = cost;
+                    path[j] = i;
+                }
+            }
+        }
+
+        return reconstructResult(minCost, path);
+    }
+
+    /**
+     * A dynamic programming algorithm that reads a cost table file one row at a time instead
+     * of loading the whole table. Row i is relaxed forward into minCost and then discarded, which
+     * is valid because minCost[i] is final once rows 0 to i - 1 have been relaxed. Only the minCost
+     * and path arrays and a single row are held in memory. Compressed and binary tables are read
+     * through their own formats.
+     *
+     * @param target the cost table file
+     * @param posts  receives the number of posts of the table in its first element
+     *
+     * @return the cheapest sequence of rentals
+     *
+     * @throws IOException if the file cannot be read or ends early
+     */
+    private static Result findCheapestRentalSequenceStreaming(String target, int[] posts) throws IOException {
+        if (CompressedTableFormat.isCompressed(new File(target))) {
+            return findCheapestRentalSequenceStreamingCompressed(target, posts);
+        }
+
+        // Binary tables are mapped, so relaxing them row by row only pages in one row at a time.
+        if (MappedCostTable.isBinary(new File(target))) {
+            CostTable costTable = MappedCostTable.open(new File(target));
+            posts[0] = costTable.size();
+            return findCheapestRentalSequenceDynamic(costTable);
+        }
+
+        long[] minCost = null;
+        int[] path = null;
+        int n = 0;
+        int row = 0;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(new File(target)))) {
+            String line;
+
+            while (row < n - 1 || minCost == null) {
+                if ((line = br.readLine()) == null) {
+                    break;
+                }
+
+                String[] parts = line.split("\t");
+                if (minCost == null) {
+                    // The first row determines the number of posts.
+                    n = parts.length;
+                    minCost = new long[n];
+                    path = new int[n];
+                    Arrays.fill(minCost, Long.MAX_VALUE);
+                    path[0] = -1;
+                    minCost[0] = 0;
+                }
+
+                long base = minCost[row];
+                for (int j = row + 1; j < n && base != Long.MAX_VALUE; j++) {
+                    // Rentals that are not offered are skipped.
+                    if (parts[j].equals("NA")) {
+                        continue;
+                    }
+
+                    long cost = base + Long.parseLong(parts[j]);
+                    if (cost < minCost[j]) {
+                        minCost[j] = cost;
+                        path[j] = row;
+                    }
+                }
+
+                row += 1;
+            }
+        }
+
+        if (minCost == null || row < n - 1) {
+            throw new IOException(String.format("Table ended after %s of %s rows: %s", row, n, target));
+        }
+
+        posts[0] = n;
+        return reconstructResult(minCost, path);
+    }
+
+    /**
+     * Streaming dynamic programming algorithm for compressed tables, which decodes one row at a
+     * time and keeps only the row and the O(n) arrays of the algorithm.
+     *
+     * @param target the compressed cost table file
+     * @param posts  receives the number of posts of the table in its first element
+     *
+     * @return the cheapest sequence of rentals
+     *
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    private static Result findCheapestRentalSequenceStreamingCompressed(String target, int[] posts) throws IOException {
+        try (CompressedTableFormat.Decoder decoder = CompressedTableFormat.Decoder.open(new File(target))) {
+            int n = decoder.size();
+            if (n == 0) {
+                throw new IOException("Table has no posts: " + target);
+            }
+            posts[0] = n;
+
+            long[] minCost = new long[n];
+            int[] path = new int[n];
+            long[] costs = new long[n];
+            Arrays.fill(minCost, Long.MAX_VALUE);
+            path[0] = -1;
+            minCost[0] = 0;
+
+            for (int row = 0; decoder.nextRow(costs); row++) {
+                long base = minCost[row];
+                for (int j = row + 1; j < n; j++) {
+                    long cost = base + costs[j - row - 1];
+                    if (cost < minCost[j]) {
+                        minCost[j] = cost;
+                        path[j] = row;
+                    }
+                }
+            }
+
+            return reconstructResult(minCost, path);
+        }
+    }
+
+    /**
+     * Builds the result of a dynamic programming solve by following the path array back
+     * from the last post.
+     *
+     * @param minCost the minimum cost to reach each post
+     * @param path    the predecessor of each post, -1 for the first post
+     *
+     * @return the cheapest sequence of rentals, or no route when the last post was never reached
+     */
+    static Result reconstructResult(long[] minCost, int[] path) {
+        int n = minCost.length;
+        if (minCost[n - 1] == Long.MAX_VALUE) {
+            return Result.noRoute();
+        }
+
+        // Count the posts on the path back from the last post to our sentinel value.
+        int length = 1;
+        for (int i = n - 1; path[i] != -1; i = path[i]) {
+            length += 1;
+        }
+
+        // Fill the sequence from the back, ending with the starting post at index 0.
+        int[] sequence = new int[length];
+        int i = n - 1;
+        for (int k = length - 1; k >= 0; k--) {
+            sequence[k] = i;
             i = path[i];
         }
-        // Add the starting post to our sequence list.
-        sequence.add(0, i);
 
-        return new Result(sequence, minCost[costTable.length - 1]);
+        return new Result(sequence, minCost[n - 1]);
     }
 
     /**
      * Creates a cost table of size n by n and populates the table using
-     * the given generation mode.
+     * the given generation mode and the seed set for this run.
      *
      * @param n    the dimension of the table
      * @param mode the generation mode
      *
-     * @return
+     * @return the generated cost table
      */
-    public static Integer[][] generateCostTable(int n, GenerationMode mode) {
-        // Create a table of size n by n
-        Integer[][] table = new Integer[n][n];
+    public static CostTable generateCostTable(int n, GenerationMode mode) {
+        return generateCostTable(n, mode, seed);
+    }
 
-        // Iterate from row 0 to n
-        for (int i = 0; i < n; i++) {
-            // Iterate from column i to n for the current row
-            for (int j = i; j < n; j++) {
-                // Fill the current index with a generated value
-                mode.fill(table, i, j);
+    /**
+     * Creates a cost table of size n by n and populates the table using
+     * the given generation mode. Rows are generated in parallel, and because every
+     * cell only depends on the seed the table is the same whatever the thread count.
+     *
+     * @param n    the dimension of the table
+     * @param mode the generation mode
+     * @param seed the seed
+     *
+     * @return the generated cost table
+     */
+    public static CostTable generateCostTable(int n, GenerationMode mode, long seed) {
+        // Create a table of size n by n wide enough for the largest value the mode can generate
+        PackedCostTable table = PackedCostTable.allocate(n, mode.maxValue(n));
+
+        /*
+        Rows get shorter further down the table, so each task fills a row from the top together
+        with its mirror from the bottom to keep the amount of work per task even.
+         */
+        IntStream.range(0, (n + 1) / 2).parallel().forEach(i -> {
+            mode.fillRow(table, seed, i);
+            if (n - 1 - i != i) {
+                mode.fillRow(table, seed, n - 1 - i);
             }
-        }
+        });
 
         return table;
     }
@@ -350,19 +906,86 @@ public class tcss343 {
      *
      * @param costTable the cost chart
      */
-    public static void testBruteForce(Integer[][] costTable) {
-        if (costTable.length > bruteForceLimit) {
+    public static void testBruteForce(CostTable costTable) {
+        if (costTable.size() > bruteForceLimit) {
+            return;
+        }
+
+        // The engine keeps each sequence in a 64 bit mask, only the deadline search's greedy plan
+        // answers larger tables
+        boolean anytime = checkpointFile == null && deadlineMillis > 0 && !costTable.isSparse();
+        if (costTable.size() > BruteForceEngine.MAX_POSTS && !anytime) {
+            System.out.println(String.format("Brute Force Algorithm:\nSkipped, the engine supports at most %s posts",
+                    BruteForceEngine.MAX_POSTS));
+            return;
+        }
+
+        if (checkpointFile != null) {
+            testCheckpointed(costTable);
+            return;
+        }
+
+        // The greedy seed of the deadline search needs every rental to be offered
+        if (deadlineMillis > 0 && !costTable.isSparse()) {
+            testAnytime(costTable, "Brute Force Algorithm", false);
             return;
         }
 
         // Find the cheapest sequence for the provided cost chart
-        Result result = findCheapestRentalSequenceBruteForce(costTable);
+        SolverMetrics.Span span = metrics.start("solve", "Brute Force Algorithm", reportSource);
+        BruteForceEngine engine = new BruteForceEngine(span.count(costTable));
+        Result result = engine.solve();
+        span.finish(costTable.size(), engine.subsetsEvaluated(), "subsets");
 
         // Print the sequence
         StringBuilder builder = new StringBuilder().append("Brute Force Algorithm:\n")
                 .append("Total Cost: %s\n")
-                .append("Sequence: %s");
-        System.out.println(String.format(builder.toString(), result.totalCost, serializeResultSequence(result)));
+                .append("Sequence: %s\n")
+                .append("Subsets/Second: %.0f");
+        System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result),
+                engine.subsetsPerSecond()));
+        report("Brute Force Algorithm", costTable.size(), result);
+    }
+
+    /**
+     * Checkpointed brute force test that searches the chunks of masks the checkpoint file does not
+     * have yet, saving its progress as it goes, and prints the sequence to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testCheckpointed(CostTable costTable) {
+        SolverMetrics.Span span = metrics.start("solve", "Brute Force Algorithm (Checkpointed)", reportSource);
+        BruteForceEngine engine = new BruteForceEngine(span.count(costTable));
+        File file = new File(checkpointFile);
+
+        try {
+            BruteForceCheckpoint checkpoint = null;
+            if (resumeCheckpoint && file.exists()) {
+                try {
+                    checkpoint = engine.resumeCheckpoint(file);
+                } catch (IOException ex) {
+                    System.err.println("Starting over, the checkpoint cannot be resumed: " + ex.getMessage());
+                }
+            }
+            if (checkpoint == null) {
+                checkpoint = engine.newCheckpoint(file);
+            }
+
+            // Find the cheapest sequence for the provided cost chart
+            Result result = engine.solve(checkpoint, batchThreads, CHECKPOINT_INTERVAL_MILLIS);
+            span.finish(costTable.size(), engine.subsetsEvaluated(), "subsets");
+
+            // Print the sequence and how much of the search was resumed
+            StringBuilder builder = new StringBuilder().append("Brute Force Algorithm (Checkpointed):\n")
+                    .append("Total Cost: %s\n")
+                    .append("Sequence: %s\n")
+                    .append("Resumed: %s of %s chunks, Subsets/Second: %.0f");
+            System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result),
+                    checkpoint.resumedChunks(), checkpoint.chunks(), engine.subsetsPerSecond()));
+            report("Brute Force Algorithm", costTable.size(), result);
+        } catch (IOException ex) {
+            System.err.println("An error occurred while checkpointing the brute force search: " + ex.getMessage());
+        }
     }
 
     /**
@@ -371,76 +994,465 @@ public class tcss343 {
      *
      * @param costTable the cost chart
      */
-    public static void testDivideConquer(Integer[][] costTable) {
-        if (costTable.length > divideConquerLimit) {
+    public static void testDivideConquer(CostTable costTable) {
+        if (costTable.size() > divideConquerLimit) {
+            return;
+        }
+
+        // The memoized algorithm is polynomial so only the recursive one needs the deadline
+        if (deadlineMillis > 0 && !memoizeDivideConquer && !costTable.isSparse()) {
+            testAnytime(costTable, "Divide and Conquer Algorithm", true);
+            return;
+        }
+
+        // Find the cheapest sequence for the provided cost chart
+        String name = memoizeDivideConquer ? "Memoized Divide and Conquer Algorithm" : "Divide and Conquer Algorithm";
+        SolverMetrics.Span span = metrics.start("solve", name, reportSource);
+        CostTable counted = span.count(costTable);
+        Result result = memoizeDivideConquer
+                ? findCheapestRentalSequenceDivideConquerMemoized(counted)
+                : findCheapestRentalSequenceDivideConquer(counted);
+        // Every call but the first looks up the rental that leads to it.
+        if (memoizeDivideConquer) {
+            span.finish(costTable.size(), span.lookups(), "destinations");
+        } else {
+            span.finish(costTable.size(), span.lookups() + 1, "calls");
+        }
+
+        // Print the sequence
+        StringBuilder builder = new StringBuilder().append(name).append(":\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s");
+        System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result)));
+        report(name, costTable.size(), result);
+    }
+
+    /**
+     * Deadline bounded test that runs an exponential algorithm for at most -deadline: milliseconds,
+     * printing its progress, and prints the best sequence it found to the console.
+     *
+     * @param costTable     the cost chart
+     * @param name          the name of the algorithm
+     * @param divideConquer true for the divide and conquer algorithm, false for brute force
+     */
+    public static void testAnytime(CostTable costTable, String name, boolean divideConquer) {
+        // Report the best sequence so far while the search runs
+        AnytimeSolver solver = new AnytimeSolver(deadlineMillis, (best, explored) ->
+                System.out.println(String.format("  %s: %.2f%% Explored, Best Cost: %s", name, explored * 100, best.totalCost)));
+
+        // Find the cheapest sequence for the provided cost chart before the deadline
+        SolverMetrics.Span span = metrics.start("solve", name + " (Deadline)", reportSource);
+        CostTable counted = span.count(costTable);
+        long start = System.nanoTime();
+        Result result = divideConquer ? solver.divideConquer(counted) : solver.bruteForce(counted);
+        long elapsed = System.nanoTime() - start;
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+
+        // Print the sequence
+        StringBuilder builder = new StringBuilder().append(name).append(" (Deadline %s ms):\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s\n")
+                .append("Optimal: %s, Time: %.1f ms");
+        System.out.println(String.format(builder.toString(), deadlineMillis, serializeResultCost(result), serializeResultSequence(result),
+                result.optimal ? "yes" : "no", elapsed / 1e6));
+        report(name, costTable.size(), result);
+    }
+
+    /**
+     * Dynamic programming algorithm test that finds the cheapest sequence
+     * of rentals and prints it to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testDynamic(CostTable costTable) {
+        if (costTable.size() > dynamicLimit) {
+            return;
+        }
+
+        // Check for the Monge fast path before falling back to the standard algorithm, the sample
+        // rejects most tables after a few cells and the full check keeps the fast path exact
+        boolean sparse = costTable.isSparse();
+        boolean monge = mongeFastPath && !sparse && MongeSolver.isLikelyMonge(costTable) && MongeSolver.isMonge(costTable);
+        boolean parallel = parallelDynamic && !sparse;
+
+        // Find the cheapest sequence for the provided cost chart
+        String name = monge ? "Dynamic Programming Algorithm (Monge)"
+                : parallel ? "Parallel Dynamic Programming Algorithm"
+                : sparse ? "Sparse Dynamic Programming Algorithm" : "Dynamic Programming Algorithm";
+        SolverMetrics.Span span = metrics.start("solve", name, reportSource);
+        CostTable counted = span.count(costTable);
+        Result result;
+        if (monge) {
+            result = MongeSolver.solveMonge(counted);
+        } else if (parallel) {
+            result = new ParallelDynamicSolver().solve(counted);
+        } else {
+            result = findCheapestRentalSequenceDynamic(counted);
+        }
+        // Every cell read relaxes the cost of reaching its column once.
+        span.finish(costTable.size(), span.cellsRead(), monge ? "lookups" : "relaxations");
+
+        // Print the sequence
+        StringBuilder builder = new StringBuilder().append(name).append(":\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s");
+        System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result)));
+        report(name, costTable.size(), result);
+    }
+
+    /**
+     * Planner test that solves a table with the algorithm the cost model predicts to be fastest
+     * and prints the sequence with the predicted and actual time to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testAutoPlan(CostTable costTable) {
+        if (planner == null) {
+            planner = AutoPlanner.load(new File(AutoPlanner.DEFAULT_CALIBRATION_FILE), recalibrate);
+        }
+
+        // Plan and find the cheapest sequence for the provided cost chart
+        AutoPlanner.Plan plan = planner.plan(costTable);
+        SolverMetrics.Span span = metrics.start("solve", "Auto Planner (" + plan.engine().displayName() + ")", reportSource);
+        CostTable counted = span.count(costTable);
+        long start = System.nanoTime();
+        Result result = plan.solve(counted);
+        long elapsed = System.nanoTime() - start;
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+
+        // Print the sequence
+        StringBuilder builder = new StringBuilder().append("Auto Planner (%s):\n")
+                .append("Probes: %s\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s\n")
+                .append("Predicted: %.3f ms, Actual: %.3f ms");
+        System.out.println(String.format(builder.toString(), plan.engine().displayName(), plan.describeProbes(),
+                serializeResultCost(result), serializeResultSequence(result), plan.predictedNanos() / 1e6, elapsed / 1e6));
+        report(plan.engine().displayName(), costTable.size(), result);
+    }
+
+    /**
+     * Streaming dynamic programming algorithm test that finds the cheapest sequence
+     * of rentals in a file without loading it and prints it to the console.
+     *
+     * @param target the cost table file
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static void testStreaming(String target) throws IOException {
+        // Find the cheapest sequence for the provided cost table file
+        SolverMetrics.Span span = metrics.start("solve", "Streaming Dynamic Programming Algorithm", reportSource);
+        int[] posts = new int[1];
+        Result result = findCheapestRentalSequenceStreaming(target, posts);
+        int n = posts[0];
+        span.finish(n, PackedCostTable.cellCount(n), PackedCostTable.cellCount(n), "relaxations");
+
+        // Print the sequence
+        StringBuilder builder = new StringBuilder().append("Streaming Dynamic Programming Algorithm:\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s");
+        System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result)));
+        report("Streaming Dynamic Programming Algorithm", n, result);
+    }
+
+    /**
+     * Out-of-core dynamic programming algorithm test that finds the cheapest sequence
+     * of rentals in a file through a bounded buffer pool and prints it to the console.
+     *
+     * @param target the cost table file
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public static void testOutOfCore(String target) throws IOException {
+        // Find the cheapest sequence for the provided cost table file
+        SolverMetrics.Span span = metrics.start("solve", "Out-of-Core Dynamic Programming Algorithm", reportSource);
+        OutOfCoreSolver solver = new OutOfCoreSolver(tileSize, poolBytes);
+        Result result = solver.solve(new File(target));
+        int n = solver.posts();
+        span.finish(n, PackedCostTable.cellCount(n), PackedCostTable.cellCount(n), "relaxations");
+
+        // Print the sequence and how much of the file was read to find it
+        StringBuilder builder = new StringBuilder().append("Out-of-Core Dynamic Programming Algorithm:\n")
+                .append("Total Cost: %s\n")
+                .append("Sequence: %s\n")
+                .append("Tiles: %s, Read: %s of %s bytes (%.2fx), Pool Hit Rate: %.1f%%");
+        System.out.println(String.format(builder.toString(), serializeResultCost(result), serializeResultSequence(result),
+                solver.tiles(), solver.bytesRead(), solver.fileBytes(),
+                solver.fileBytes() == 0 ? 0 : (double) solver.bytesRead() / solver.fileBytes(), solver.hitRate() * 100));
+        report("Out-of-Core Dynamic Programming Algorithm", n, result);
+    }
+
+    /**
+     * Returns the total cost of a result, or a note that no sequence reaches the last post.
+     *
+     * @param result the result
+     *
+     * @return the cost
+     */
+    public static String serializeResultCost(Result result) {
+        return result.hasRoute() ? String.valueOf(result.totalCost) : "None (no route to the last post)";
+    }
+
+    public static String serializeResultSequence(Result result) {
+        // Generate string representation of the sequence, sized for the posts of most tables
+        StringBuilder builder = new StringBuilder(result.sequence.length * 8);
+        serializeResultSequence(result, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the sequence of a result to a builder, posts separated by "->".
+     *
+     * @param result  the result
+     * @param builder the builder to append to
+     */
+    public static void serializeResultSequence(Result result, StringBuilder builder) {
+        if (!result.hasRoute()) {
+            builder.append("None");
+            return;
+        }
+
+        for (int i = 0; i < result.sequence.length; i++) {
+            if (i > 0) {
+                builder.append("->");
+            }
+
+            builder.append(result.sequence[i]);
+        }
+    }
+
+    /**
+     * Runs tests for a provided cost table.
+     *
+     * @param costTable the table to test
+     * @param testBruteForce whether or not to test the brute force algorithm
+     * @param testDivideConquer whether or not to test the divide and conquer algorithm
+     * @param testDynamic whether or not to test the dynamic programming algorithm
+     */
+    private static void testCostTable(CostTable costTable, boolean testBruteForce, boolean testDivideConquer, boolean testDynamic) {
+        if (costTable.isSparse()) {
+            testSparse(costTable, testBruteForce, testDivideConquer, testDynamic);
+            return;
+        }
+
+        if (autoPlan) {
+            // The planner replaces the three algorithms and their limits.
+            testAutoPlan(costTable);
+            testBruteForce = false;
+            testDivideConquer = false;
+            testDynamic = false;
+        }
+
+        if (testBruteForce) {
+            testBruteForce(costTable);
+        }
+
+        if (testDivideConquer) {
+            testDivideConquer(costTable);
+        }
+
+        if (testDynamic) {
+            testDynamic(costTable);
+        }
+
+        if (topK > 0) {
+            testTopK(costTable);
+        }
+
+        if (maxHops > 0) {
+            testMaxHops(costTable);
+        }
+
+        if (queryOrigins != null) {
+            testQueries(costTable);
+        }
+
+        if (updateRows != null) {
+            testUpdates(costTable);
+        }
+    }
+
+    /**
+     * Runs the tests that support tables where some rentals are not offered. The planner, the
+     * top-k, hop constrained, query and incremental solvers all assume every rental exists.
+     *
+     * @param costTable the sparse table to test
+     * @param testBruteForce whether or not to test the brute force algorithm
+     * @param testDivideConquer whether or not to test the divide and conquer algorithm
+     * @param testDynamic whether or not to test the dynamic programming algorithm
+     */
+    private static void testSparse(CostTable costTable, boolean testBruteForce, boolean testDivideConquer, boolean testDynamic) {
+        long cells = PackedCostTable.cellCount(costTable.size());
+        System.out.println(String.format("Sparse Table: %s of %s rentals offered (%.2f%%)", costTable.availableCount(), cells,
+                cells == 0 ? 100.0 : 100.0 * costTable.availableCount() / cells));
+        if (autoPlan || topK > 0 || maxHops > 0 || queryOrigins != null || updateRows != null) {
+            System.out.println("Sparse tables are only solved by the brute force, divide and conquer and dynamic programming algorithms");
+        }
+
+        if (testBruteForce || autoPlan) {
+            testBruteForce(costTable);
+        }
+
+        if (testDivideConquer || autoPlan) {
+            testDivideConquer(costTable);
+        }
+
+        if (testDynamic || autoPlan) {
+            testDynamic(costTable);
+        }
+    }
+
+    /**
+     * Incremental algorithm test that changes the prices given with -u: one at a time,
+     * re-solves the table after each change and prints the results to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testUpdates(CostTable costTable) {
+        // Work on a copy so the prices of the tested table do not change
+        IncrementalSolver solver = new IncrementalSolver(PackedCostTable.copyOf(costTable, costTable.width()));
+
+        StringBuilder builder = new StringBuilder().append("Incremental Dynamic Programming Algorithm:");
+        for (int k = 0; k < updateRows.length; k++) {
+            if (updateRows[k] < 0 || updateColumns[k] >= costTable.size() || updateColumns[k] <= updateRows[k]) {
+                System.err.println(String.format("Invalid price update for (%s, %s)", updateRows[k], updateColumns[k]));
+                return;
+            }
+
+            SolverMetrics.Span span = metrics.start("solve", "Incremental Dynamic Programming Algorithm", reportSource);
+            long start = System.nanoTime();
+            Result result = solver.updateCost(updateRows[k], updateColumns[k], updateValues[k]);
+            long elapsed = System.nanoTime() - start;
+            span.finish(costTable.size(), 0, 1, "updates");
+
+            builder.append(String.format("\n(%s, %s) = %s: Total Cost: %s, Sequence: %s, Time: %.1f us", updateRows[k],
+                    updateColumns[k], updateValues[k], result.totalCost, serializeResultSequence(result), elapsed / 1000.0));
+            report("Incremental Dynamic Programming Algorithm", costTable.size(), result);
+        }
+        System.out.println(builder.toString());
+    }
+
+    /**
+     * Top k algorithm test that finds the k cheapest sequences
+     * of rentals and prints them to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testTopK(CostTable costTable) {
+        if (costTable.size() > dynamicLimit) {
             return;
         }
 
-        // Find the cheapest sequence for the provided cost chart
-        Result result = findCheapestRentalSequenceDivideConquer(costTable);
-
-        // Print the sequence
-        StringBuilder builder = new StringBuilder().append("Divide and Conquer Algorithm:\n")
-                .append("Total Cost: %s\n")
-                .append("Sequence: %s");
-        System.out.println(String.format(builder.toString(), result.totalCost, serializeResultSequence(result)));
+        // Find the k cheapest sequences for the provided cost chart
+        SolverMetrics.Span span = metrics.start("solve", "Top K Dynamic Programming Algorithm", reportSource);
+        List<Result> results = TopKSolver.solve(span.count(costTable), topK);
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+
+        // Print the sequences
+        StringBuilder builder = new StringBuilder().append(String.format("Top %s Dynamic Programming Algorithm:", topK));
+        for (int k = 0; k < results.size(); k++) {
+            builder.append(String.format("\n%s. Total Cost: %s, Sequence: %s", k + 1, results.get(k).totalCost,
+                    serializeResultSequence(results.get(k))));
+            report("Top K Dynamic Programming Algorithm", costTable.size(), results.get(k));
+        }
+        System.out.println(builder.toString());
     }
 
     /**
-     * Dynamic programming algorithm test that finds the cheapest sequence
-     * of rentals and prints it to the console.
+     * Hop constrained algorithm test that finds the cheapest sequence of rentals
+     * for every budget of rentals up to -maxHops: and prints them to the console.
      *
      * @param costTable the cost chart
      */
-    public static void testDynamic(Integer[][] costTable) {
-        if (costTable.length > dynamicLimit) {
+    public static void testMaxHops(CostTable costTable) {
+        if (costTable.size() > dynamicLimit) {
             return;
         }
 
-        // Find the cheapest sequence for the provided cost chart
-        Result result = findCheapestRentalSequenceDynamic(costTable);
-
-        // Print the sequence
-        StringBuilder builder = new StringBuilder().append("Dynamic Programming Algorithm:\n")
-                .append("Total Cost: %s\n")
-                .append("Sequence: %s");
-        System.out.println(String.format(builder.toString(), result.totalCost, serializeResultSequence(result)));
+        // Find the cheapest sequence for every budget for the provided cost chart
+        SolverMetrics.Span span = metrics.start("solve", "Hop Constrained Dynamic Programming Algorithm", reportSource);
+        List<Result> results = HopConstrainedSolver.solve(span.count(costTable), maxHops);
+        span.finish(costTable.size(), span.cellsRead(), "cells");
+
+        // Print the sequences
+        StringBuilder builder = new StringBuilder().append("Hop Constrained Dynamic Programming Algorithm:");
+        for (int h = 0; h < results.size(); h++) {
+            builder.append(String.format("\nAt Most %s Rentals: Total Cost: %s, Sequence: %s", h + 1, results.get(h).totalCost,
+                    serializeResultSequence(results.get(h))));
+            report("Hop Constrained Dynamic Programming Algorithm", costTable.size(), results.get(h));
+        }
+        System.out.println(builder.toString());
     }
 
-    public static String serializeResultSequence(Result result) {
-        // Generate string representation of the sequence
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < result.sequence.size(); i++) {
-            if (builder.length() > 0) {
-                builder.append("->");
+    /**
+     * Route query test that finds the cheapest sequence of rentals between each
+     * pair of posts given with -q: and prints them to the console.
+     *
+     * @param costTable the cost chart
+     */
+    public static void testQueries(CostTable costTable) {
+        SolverMetrics.Span span = metrics.start("solve", "Route Query", reportSource);
+        RouteQueryEngine engine = new RouteQueryEngine(span.count(costTable), queryCacheBudget);
+
+        for (int k = 0; k < queryOrigins.length; k++) {
+            if (queryDestinations[k] >= costTable.size() || queryDestinations[k] < queryOrigins[k]) {
+                System.err.println(String.format("Invalid query from %s to %s", queryOrigins[k], queryDestinations[k]));
+                return;
             }
+        }
 
-            builder.append(result.sequence.get(i));
+        // Tables whose origins do not all fit the cache are answered lazily instead.
+        if (queryPrecompute) {
+            try {
+                engine.precomputeAll();
+            } catch (IllegalStateException ex) {
+                System.err.println(ex.getMessage() + ", computing origins as they are queried");
+            }
         }
 
-        return builder.toString();
+        Result[] results = engine.query(queryOrigins, queryDestinations);
+        span.finish(costTable.size(), results.length, "queries");
+
+        // Print the sequences
+        StringBuilder builder = new StringBuilder().append("Route Queries:");
+        for (int k = 0; k < results.length; k++) {
+            builder.append(String.format("\n%s to %s: Total Cost: %s, Sequence: %s", queryOrigins[k], queryDestinations[k],
+                    results[k].totalCost, serializeResultSequence(results[k])));
+            report("Route Query", costTable.size(), results[k]);
+        }
+        builder.append(String.format("\nCache Hit Rate: %.1f%%, Average Query Latency: %.1f us",
+                engine.hitRate() * 100, engine.averageLatencyNanos() / 1000));
+        System.out.println(builder.toString());
     }
 
     /**
-     * Runs tests for a provided cost table.
+     * Writes a result to the report if one was requested with -report:.
      *
-     * @param costTable the table to test
-     * @param testBruteForce whether or not to test the brute force algorithm
-     * @param testDivideConquer whether or not to test the divide and conquer algorithm
-     * @param testDynamic whether or not to test the dynamic programming algorithm
+     * @param algorithm the name of the algorithm that found the result
+     * @param posts     the number of posts of the table
+     * @param result    the result
      */
-    private static void testCostTable(Integer[][] costTable, boolean testBruteForce, boolean testDivideConquer, boolean testDynamic) {
-        if (testBruteForce) {
-            testBruteForce(costTable);
+    private static void report(String algorithm, int posts, Result result) {
+        if (reportWriter == null) {
+            return;
         }
 
-        if (testDivideConquer) {
-            testDivideConquer(costTable);
+        try {
+            reportWriter.write(reportSource, algorithm, posts, result);
+        } catch (IOException ex) {
+            System.err.println("An error occurred while writing the report: " + ex.getMessage());
+            reportWriter = null;
         }
+    }
 
-        if (testDynamic) {
-            testDynamic(costTable);
-        }
+    /**
+     * Prints the memory used by a table next to the memory the boxed Integer[n][n] layout would use.
+     *
+     * @param costTable the table
+     */
+    private static void printTableMemory(CostTable costTable) {
+        System.out.println(String.format("Table Memory: %s bytes (%s values, boxed layout ~%s bytes)",
+                costTable.footprintBytes(), costTable.width(), CostTable.boxedFootprintBytes(costTable.size())));
     }
 
     /**
@@ -449,12 +1461,46 @@ public class tcss343 {
      * @param target
      */
     private static void testFromFile(String target) {
+        reportSource = target;
         try {
-            Integer[][] costTable = readCostTableFromFile(target);
+            if (streamFiles) {
+                System.out.println(SEPARATOR);
+                System.out.println(String.format("Streaming File: %s", target));
+                System.out.println(SEPARATOR);
+
+                testStreaming(target);
+                return;
+            }
+
+            // Compressed tables cannot be read in tiles but decode one row at a time, so they are streamed instead.
+            if (CompressedTableFormat.isCompressed(new File(target))
+                    && (outOfCore || !OutOfCoreSolver.fitsInMemory(new File(target)))) {
+                System.out.println(SEPARATOR);
+                System.out.println(String.format("Streaming File: %s", target));
+                System.out.println(SEPARATOR);
+
+                testStreaming(target);
+                return;
+            }
+
+            if (outOfCore || !OutOfCoreSolver.fitsInMemory(new File(target))) {
+                System.out.println(SEPARATOR);
+                System.out.println(String.format("Out-of-Core File: %s", target));
+                System.out.println(SEPARATOR);
+
+                testOutOfCore(target);
+                return;
+            }
+
+            SolverMetrics.Span span = metrics.start("read", "Table File", target);
+            CostTable costTable = readCostTableFromFile(target);
+            span.finish(costTable.size(), PackedCostTable.cellCount(costTable.size()),
+                    PackedCostTable.cellCount(costTable.size()), "cells");
 
             System.out.println(SEPARATOR);
             System.out.println(String.format("Testing File: %s", target));
-            System.out.println(String.format("Table Dimension: %s", costTable.length));
+            System.out.println(String.format("Table Dimension: %s", costTable.size()));
+            printTableMemory(costTable);
             System.out.println(SEPARATOR);
 
             testCostTable(costTable, true, true, true);
@@ -463,6 +1509,122 @@ public class tcss343 {
         }
     }
 
+    /**
+     * Solves every file of a directory or manifest concurrently and prints one result line per file
+     * in order, or writes them to the report if one was requested.
+     *
+     * @param source the directory or manifest
+     */
+    private static void testBatch(String source) {
+        System.out.println(SEPARATOR);
+        System.out.println(String.format("Batch: %s", source));
+        System.out.println(String.format("Solvers: %s, Loaders: %s, Memory Budget: %s MB",
+                batchThreads, batchLoaders, batchMemory >> 20));
+        System.out.println(SEPARATOR);
+
+        String algorithm;
+        java.util.function.Function<CostTable, Result> solver;
+        if (autoPlan) {
+            if (planner == null) {
+                planner = AutoPlanner.load(new File(AutoPlanner.DEFAULT_CALIBRATION_FILE), recalibrate);
+            }
+            algorithm = "Auto Planner";
+            solver = table -> planner.plan(table).solve(table);
+        } else {
+            algorithm = "Dynamic Programming";
+            solver = tcss343::findCheapestRentalSequenceDynamic;
+        }
+
+        try {
+            List<File> inputs = BatchRunner.listInputs(new File(source));
+            BatchRunner runner = new BatchRunner(batchThreads, batchLoaders, batchMemory, algorithm, solver, metrics);
+            ReportWriter out = reportWriter != null ? reportWriter
+                    : new ReportWriter(new java.io.OutputStreamWriter(System.out), ReportWriter.Format.TEXT);
+
+            long start = System.nanoTime();
+            runner.run(inputs, out);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println(String.format("Files: %s, Failed: %s, Time: %.1f ms",
+                    inputs.size(), runner.failures(), elapsed / 1e6));
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("An error occurred while running the batch: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs the solver service until it is shut down through /shutdown.
+     *
+     * @param port the port on the loopback interface
+     */
+    private static void runService(int port) {
+        try {
+            SolverService service = new SolverService(port, batchThreads, serviceCacheBytes, metrics);
+            service.start();
+            System.out.println(String.format("Solver Service: http://127.0.0.1:%s/solve?file=./table.txt (Solvers: %s, Cache: %s MB)",
+                    service.port(), batchThreads, serviceCacheBytes >> 20));
+            service.awaitShutdown();
+            System.out.println("Solver Service stopped");
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("An error occurred while running the solver service: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Load test that sends requests for the given files to a running solver service and prints the
+     * latency and throughput seen by the client and the statistics of the service.
+     *
+     * @param port  the port of the service on the loopback interface
+     * @param files the table files to ask for
+     */
+    private static void testLoad(int port, String[] files) {
+        System.out.println(SEPARATOR);
+        System.out.println(String.format("Load Test: %s requests, %s concurrent, %s tables per request",
+                loadRequests, loadConcurrency, loadBatchSize));
+        System.out.println(SEPARATOR);
+
+        try {
+            List<String> targets = new java.util.ArrayList<>();
+            for (String file : files) {
+                targets.add(new File(file).getAbsolutePath());
+            }
+
+            LoadGenerator generator = new LoadGenerator(port, targets, "dynamic", loadBatchSize);
+            // The first round warms up the cache and the JIT of the service.
+            generator.run(Math.min(loadRequests, targets.size() * loadConcurrency), loadConcurrency);
+            generator.run(loadRequests, loadConcurrency);
+
+            StringBuilder builder = new StringBuilder().append("Throughput: %.1f requests/s, Errors: %s\n")
+                    .append("Latency: p50 %.3f ms, p99 %.3f ms\n")
+                    .append("Service: %s");
+            System.out.println(String.format(builder.toString(), generator.requestsPerSecond(), generator.errors(),
+                    generator.percentileNanos(0.50) / 1e6, generator.percentileNanos(0.99) / 1e6, generator.stats()));
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("An error occurred while load testing the solver service: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Parses a comma separated list of table sizes.
+     *
+     * @param list the list
+     *
+     * @return the sizes, null where a size is invalid
+     */
+    private static Integer[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        Integer[] sizes = new Integer[parts.length];
+        for (int i = 0; i < sizes.length; i++) {
+            try {
+                sizes[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException ex) {
+                System.err.println("Invalid generations size specified: " + parts[i]);
+            }
+        }
+
+        return sizes;
+    }
+
     /**
      * Entry point for this program.
      *
@@ -470,7 +1632,12 @@ public class tcss343 {
      */
     public static void main(String... args) {
         String[] files = null;
+        String[] conversion = null;
         Integer[] sizesToGenerate = null;
+        Integer[] implicitSizes = null;
+        String batch = null;
+        int servePort = -1;
+        int loadPort = -1;
         for (String arg : args) {
             arg = arg.toLowerCase();
 
@@ -479,15 +1646,11 @@ public class tcss343 {
             }
 
             if (arg.startsWith("-g:")) {
-                String[] parts = arg.substring(3).split(",");
-                sizesToGenerate = new Integer[parts.length];
-                for (int i = 0; i < sizesToGenerate.length; i++) {
-                    try {
-                        sizesToGenerate[i] = Integer.parseInt(parts[i]);
-                    } catch (NumberFormatException ex) {
-                        System.err.println("Invalid generations size specified: " + parts[i]);
-                    }
-                }
+                sizesToGenerate = parseSizes(arg.substring(3));
+            }
+
+            if (arg.startsWith("-i:")) {
+                implicitSizes = parseSizes(arg.substring(3));
             }
 
             if (arg.startsWith("-bfl:")) {
@@ -505,33 +1668,254 @@ public class tcss343 {
             if (arg.equals("-tg")) {
                 testGenerated = true;
             }
+
+            if (arg.equals("-stream")) {
+                streamFiles = true;
+            }
+
+            if (arg.startsWith("-report:")) {
+                try {
+                    reportWriter = new ReportWriter(new File(arg.substring(8)));
+                } catch (IOException ex) {
+                    System.err.println("An error occurred while creating the report: " + ex.getMessage());
+                }
+            }
+
+            if (arg.startsWith("-deadline:")) {
+                deadlineMillis = Long.parseLong(arg.substring(10));
+            }
+
+            if (arg.equals("-auto")) {
+                autoPlan = true;
+            }
+
+            if (arg.equals("-recalibrate")) {
+                recalibrate = true;
+            }
+
+            if (arg.equals("-ooc")) {
+                outOfCore = true;
+            }
+
+            if (arg.startsWith("-tile:")) {
+                tileSize = Integer.parseInt(arg.substring(6));
+            }
+
+            if (arg.startsWith("-pool:")) {
+                poolBytes = Long.parseLong(arg.substring(6)) << 20;
+            }
+
+            if (arg.equals("-binary")) {
+                saveBinary = true;
+            }
+
+            if (arg.equals("-compress")) {
+                saveCompressed = true;
+            }
+
+            if (arg.equals("-dcm")) {
+                memoizeDivideConquer = true;
+            }
+
+            if (arg.equals("-monge")) {
+                mongeFastPath = true;
+            }
+
+            if (arg.equals("-pdp")) {
+                parallelDynamic = true;
+            }
+
+            if (arg.startsWith("-k:")) {
+                topK = Integer.parseInt(arg.substring(3));
+            }
+
+            if (arg.startsWith("-maxhops:")) {
+                maxHops = Integer.parseInt(arg.substring(9));
+            }
+
+            if (arg.startsWith("-q:")) {
+                String[] parts = arg.substring(3).split(",");
+                queryOrigins = new int[parts.length];
+                queryDestinations = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    String[] posts = parts[i].split("-");
+                    queryOrigins[i] = Integer.parseInt(posts[0]);
+                    queryDestinations[i] = Integer.parseInt(posts[1]);
+                }
+            }
+
+            if (arg.startsWith("-u:")) {
+                String[] parts = arg.substring(3).split(",");
+                updateRows = new int[parts.length];
+                updateColumns = new int[parts.length];
+                updateValues = new long[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    String[] cell = parts[i].split("-");
+                    updateRows[i] = Integer.parseInt(cell[0]);
+                    updateColumns[i] = Integer.parseInt(cell[1]);
+                    updateValues[i] = Long.parseLong(cell[2]);
+                }
+            }
+
+            if (arg.startsWith("-qcache:")) {
+                queryCacheBudget = Long.parseLong(arg.substring(8)) << 20;
+            }
+
+            if (arg.equals("-qall")) {
+                queryPrecompute = true;
+            }
+
+            if (arg.startsWith("-batch:")) {
+                batch = arg.substring(7);
+            }
+
+            if (arg.startsWith("-threads:")) {
+                batchThreads = Integer.parseInt(arg.substring(9));
+            }
+
+            if (arg.startsWith("-iothreads:")) {
+                batchLoaders = Integer.parseInt(arg.substring(11));
+            }
+
+            if (arg.startsWith("-batchmem:")) {
+                batchMemory = Long.parseLong(arg.substring(10)) << 20;
+            }
+
+            if (arg.startsWith("-checkpoint:")) {
+                checkpointFile = arg.substring(12);
+            }
+
+            if (arg.startsWith("-resume:")) {
+                checkpointFile = arg.substring(8);
+                resumeCheckpoint = true;
+            }
+
+            if (arg.startsWith("-serve:")) {
+                servePort = Integer.parseInt(arg.substring(7));
+            }
+
+            if (arg.startsWith("-cache:")) {
+                serviceCacheBytes = Long.parseLong(arg.substring(7)) << 20;
+            }
+
+            if (arg.startsWith("-loadgen:")) {
+                loadPort = Integer.parseInt(arg.substring(9));
+            }
+
+            if (arg.startsWith("-requests:")) {
+                loadRequests = Integer.parseInt(arg.substring(10));
+            }
+
+            if (arg.startsWith("-concurrency:")) {
+                loadConcurrency = Integer.parseInt(arg.substring(13));
+            }
+
+            if (arg.startsWith("-batchsize:")) {
+                loadBatchSize = Integer.parseInt(arg.substring(11));
+            }
+
+            if (arg.startsWith("-metrics:")) {
+                try {
+                    metrics = new SolverMetrics(new File(arg.substring(9)));
+                } catch (IOException ex) {
+                    System.err.println("An error occurred while creating the metrics: " + ex.getMessage());
+                }
+            }
+
+            if (arg.startsWith("-seed:")) {
+                seed = Long.parseLong(arg.substring(6));
+            }
+
+            if (arg.startsWith("-convert:")) {
+                conversion = arg.substring(9).split(",");
+            }
+        }
+
+        if (conversion != null) {
+            if (conversion.length == 2) {
+                convertCostTable(conversion[0], conversion[1]);
+            } else {
+                System.err.println("Invalid conversion specified, expected -convert:source,target");
+            }
         }
 
-        if (files != null) {
+        if (files != null && loadPort >= 0) {
+            // The files are what the load generator asks the service for.
+            testLoad(loadPort, files);
+        } else if (files != null) {
             for (String file : files) {
                 testFromFile(file);
             }
         }
 
+        if (batch != null) {
+            testBatch(batch);
+        }
+
         if (sizesToGenerate != null) {
-            List<Integer[][]> costTables = new ArrayList<>();
+            System.out.println(String.format("Generation Seed: %s", seed));
 
+            // Each table is tested as soon as it is saved so only one is held at a time.
             for (Integer size : sizesToGenerate) {
                 if (size == null || size < 2) {
                     continue;
                 }
 
-                costTables.add(generateAndSaveCostTable(size, GenerationMode.RANDOM));
-                costTables.add(generateAndSaveCostTable(size, GenerationMode.DEPENDENT));
+                for (GenerationMode mode : GenerationMode.values()) {
+                    CostTable table = generateAndSaveCostTable(size, mode);
+                    if (!testGenerated) {
+                        continue;
+                    }
+
+                    reportSource = "generated:" + table.size();
+                    System.out.println(SEPARATOR);
+                    System.out.println(String.format("Table Dimension: %s", table.size()));
+                    printTableMemory(table);
+                    System.out.println(SEPARATOR);
+                    testCostTable(table, true, true, true);
+                }
             }
+        }
+
+        if (implicitSizes != null) {
+            System.out.println(String.format("Generation Seed: %s", seed));
 
-            if (testGenerated) {
-                costTables.forEach(table -> {
+            for (Integer size : implicitSizes) {
+                if (size == null || size < 2) {
+                    continue;
+                }
+
+                for (GenerationMode mode : GenerationMode.values()) {
+                    CostTable table = new ImplicitCostTable(size, mode, seed);
+                    reportSource = String.format("implicit:%s:%s", mode.name(), size);
                     System.out.println(SEPARATOR);
-                    System.out.println(String.format("Table Dimension: %s", table.length));
+                    System.out.println(String.format("Implicit %s Table Dimension: %s", mode.name(), table.size()));
+                    printTableMemory(table);
                     System.out.println(SEPARATOR);
                     testCostTable(table, true, true, true);
-                });
+                }
+            }
+        }
+
+        if (servePort >= 0) {
+            runService(servePort);
+        }
+
+        if (reportWriter != null) {
+            try {
+                reportWriter.close();
+                System.out.println(String.format("Wrote %s results to the report", reportWriter.records()));
+            } catch (IOException ex) {
+                System.err.println("An error occurred while writing the report: " + ex.getMessage());
+            }
+        }
+
+        if (metrics.isEnabled()) {
+            try {
+                metrics.close();
+                System.out.println(String.format("Wrote %s spans to the metrics", metrics.spans()));
+            } catch (IOException ex) {
+                System.err.println("An error occurred while writing the metrics: " + ex.getMessage());
             }
         }
 
@@ -541,8 +1925,43 @@ public class tcss343 {
                     .append("  -f:./file.txt,./file2.txt\t\tRuns test for specified files\n")
                     .append("  -g:5,10,20,40\t\tGenerates and saves tables of specified sizes to files\n")
                     .append("  -tg\t\tEnables tests on generated tables\n")
+                    .append("  -seed:42\t\tSets the seed used to generate tables\n")
+                    .append("  -i:100000,1000000\t\tRuns tests on implicit tables that are computed instead of stored\n")
+                    .append("  -stream\t\tSolves files one row at a time without loading them\n")
+                    .append("  -ooc\t\tSolves files in tiles through a bounded buffer pool without loading them\n")
+                    .append("  -tile:4096\t\tSets the number of rows and columns in an out-of-core tile\n")
+                    .append("  -pool:64\t\tSets the memory budget of the out-of-core buffer pool in megabytes\n")
+                    .append("  -binary\t\tSaves generated tables in the binary format\n")
+                    .append("  -compress\t\tSaves generated tables in the delta and varint compressed format (.rcz)\n")
+                    .append("  -report:./report.csv\t\tAlso writes every result to a text, .csv or .jsonl report\n")
+                    .append("  -metrics:./metrics.jsonl\t\tWrites the time, CPU, cells, operations and memory of every step as JSON lines or .prom text\n")
+                    .append("  -k:10\t\tFinds the k cheapest sequences\n")
+                    .append("  -maxHops:3\t\tFinds the cheapest sequence using at most 1 to H rentals\n")
+                    .append("  -q:0-5,3-9\t\tFinds the cheapest sequence between each pair of posts\n")
+                    .append("  -qcache:64\t\tSets the memory budget of the route query cache in megabytes\n")
+                    .append("  -qall\t\tComputes every origin of the route query cache in parallel before the queries\n")
+                    .append("  -u:0-5-300,2-9-10\t\tChanges each price (row-column-value) and re-solves incrementally\n")
+                    .append("  -batch:./tables\t\tSolves every file of a directory or manifest concurrently, one result line per file\n")
+                    .append("  -threads:8\t\tSets the number of threads solving tables in batch and service mode and searching a checkpointed brute force\n")
+                    .append("  -iothreads:16\t\tSets the number of threads loading tables in batch mode\n")
+                    .append("  -batchmem:512\t\tSets the memory budget of the tables in flight in batch mode in megabytes\n")
+                    .append("  -serve:8080\t\tRuns a solver service on a local port that keeps parsed tables cached\n")
+                    .append("  -cache:512\t\tSets the memory budget of the table cache of the solver service in megabytes\n")
+                    .append("  -loadgen:8080\t\tLoad tests the solver service on a port with the files given with -f:\n")
+                    .append("  -requests:1000\t\tSets the number of requests the load generator sends\n")
+                    .append("  -concurrency:8\t\tSets the number of requests the load generator keeps in flight\n")
+                    .append("  -batchsize:1\t\tSets the number of tables the load generator asks for per request\n")
+                    .append("  -convert:./file.txt,./file.bin\t\tConverts a table between the text, binary and compressed (.rcz) formats\n")
+                    .append("  -auto\t\tSolves each table with the algorithm a calibrated cost model predicts to be fastest\n")
+                    .append("  -recalibrate\t\tMeasures the cost model of -auto again instead of using the cached one\n")
+                    .append("  -deadline:500\t\tStops brute force and divide and conquer after a time and returns their best sequence\n")
+                    .append("  -checkpoint:./bf.properties\t\tSaves the progress of brute force to a file every 30 seconds\n")
+                    .append("  -resume:./bf.properties\t\tResumes brute force from a checkpoint file and keeps saving to it\n")
                     .append("  -bfl:50\t\tSets the max dimension for brute force testing\n")
                     .append("  -dcl:50\t\tSets the max dimension for divide and conquer testing\n")
+                    .append("  -dcm\t\tUses the memoized divide and conquer algorithm\n")
+                    .append("  -monge\t\tSolves tables that satisfy the Monge inequality in O(n log n)\n")
+                    .append("  -pdp\t\tUses the parallel blocked dynamic programming algorithm\n")
                     .append("  -dpl:50\t\tSets the max dimension for dynamic programming testing");
             System.out.println(builder.toString());
         }
@@ -556,8 +1975,16 @@ public class tcss343 {
          * Generates a random number.
          */
         RANDOM {
-            public int nextInt(Integer[][] costTable, int row, int column) {
-                return generateInteger();
+            public long nextValue(long seed, int row, int column, long previous) {
+                return generateInteger(seed, row, column);
+            }
+
+            public long maxValue(int n) {
+                return MAX_BOUND;
+            }
+
+            public boolean dependsOnPrevious() {
+                return false;
             }
         },
         /**
@@ -565,39 +1992,60 @@ public class tcss343 {
          * of the corresponding row to that number.
          */
         DEPENDENT {
-            public int nextInt(Integer[][] costTable, int row, int column) {
-                int val = generateInteger();
-                if (costTable[row][column - 1] != null) {
-                    val += costTable[row][column - 1];
-                }
-                return val;
+            public long nextValue(long seed, int row, int column, long previous) {
+                return generateInteger(seed, row, column) + previous;
+            }
+
+            public long maxValue(int n) {
+                return (long) Math.max(n - 1, 0) * MAX_BOUND;
+            }
+
+            public boolean dependsOnPrevious() {
+                return true;
             }
         };
 
         /**
-         * Generates an integer from the given table, row, and column.
+         * Generates the value of a cell.
          *
-         * @param costTable the table
-         * @param row       the row index
-         * @param column    the column index
+         * @param seed     the seed of the table
+         * @param row      the row index
+         * @param column   the column index
+         * @param previous the value of the previous cell in the row, 0 for the first cell
+         *
+         * @return the value
+         */
+        public abstract long nextValue(long seed, int row, int column, long previous);
+
+        /**
+         * Returns the largest value this mode can generate for a table of the given dimension.
+         *
+         * @param n the dimension of the table
+         *
+         * @return the max value
+         */
+        public abstract long maxValue(int n);
+
+        /**
+         * Returns whether or not a value depends on the previous value in its row.
+         *
+         * @return true if the previous value is used
          */
-        public abstract int nextInt(Integer[][] costTable, int row, int column);
+        public abstract boolean dependsOnPrevious();
 
         /**
-         * Generates a number and populates the table at the corresponding
-         * indices with the generated number.
+         * Generates the numbers of a row and populates the table with them.
          *
          * @param costTable the table
+         * @param seed      the seed of the table
          * @param row       the row index
-         * @param column    the column index
          */
-        public void fill(Integer[][] costTable, int row, int column) {
-            if (row == column) {
-                costTable[row][column] = 0;
-            } else {
-                while (costTable[row][column] == null || costTable[row][column] <= 0) {
-                    costTable[row][column] = nextInt(costTable, row, column);
-                }
+        public void fillRow(PackedCostTable costTable, long seed, int row) {
+            // The cell left of the first cell in a row is the diagonal which is always 0.
+            long previous = 0;
+            for (int column = row + 1; column < costTable.size(); column++) {
+                previous = nextValue(seed, row, column, previous);
+                costTable.set(row, column, previous);
             }
         }
     }
@@ -607,18 +2055,86 @@ public class tcss343 {
      */
     public static class Result {
 
-        private List<Integer> sequence;
-        private int totalCost;
+        private final int[] sequence;
+        private final long totalCost;
+        private final boolean optimal;
+
+        /**
+         * Constructor that takes a sequence of posts and total cost of a cheapest sequence.
+         *
+         * @param sequence  the sequence, which is not copied
+         * @param totalCost the cost
+         */
+        public Result(int[] sequence, long totalCost) {
+            this(sequence, totalCost, true);
+        }
 
         /**
-         * Constructor that takes a sequence list and total cost.
+         * Constructor that takes a sequence of posts, total cost and whether or not it is known
+         * to be a cheapest sequence.
          *
-         * @param sequence  the sequence
+         * @param sequence  the sequence, which is not copied
          * @param totalCost the cost
+         * @param optimal   false if the search stopped before proving the sequence is the cheapest
          */
-        public Result(List<Integer> sequence, int totalCost) {
+        public Result(int[] sequence, long totalCost, boolean optimal) {
             this.sequence = sequence;
             this.totalCost = totalCost;
+            this.optimal = optimal;
+        }
+
+        /**
+         * Returns the result of a table where no sequence of offered rentals reaches the last post.
+         *
+         * @return a result with an empty sequence
+         */
+        public static Result noRoute() {
+            return new Result(new int[0], CostTable.UNAVAILABLE);
+        }
+
+        /**
+         * Returns whether or not a sequence reaches the last post.
+         *
+         * @return false if some rentals are not offered and no sequence is left
+         */
+        public boolean hasRoute() {
+            return sequence.length > 0;
+        }
+
+        /**
+         * Returns the posts of the sequence in order. The array is shared and must not be modified.
+         *
+         * @return the sequence
+         */
+        public int[] sequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the total cost of the sequence.
+         *
+         * @return the cost
+         */
+        public long totalCost() {
+            return totalCost;
+        }
+
+        /**
+         * Returns whether or not the sequence is known to be a cheapest sequence.
+         *
+         * @return false if the search stopped early and a cheaper sequence may exist
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        /**
+         * Returns the number of rentals in the sequence.
+         *
+         * @return the number of rentals
+         */
+        public int rentals() {
+            return Math.max(sequence.length - 1, 0);
         }
 
     }
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The block reduction of {@link ParallelDynamicSolver} with the jdk.incubator.vector API.
+ *
+ * Each candidate is packed into one key, its cost shifted left past the bits of the largest post
+ * of the range and the post in the low bits, so the smallest key is the cheapest candidate and,
+ * between candidates of the same cost, the earliest post. The scan is then a lane-wise minimum of
+ * the keys with no masks and no branches, which the JIT compiles to a handful of vector
+ * instructions per step. Tracking the posts with compare masks, blends or masked stores instead is
+ * slower than the scalar loop on JDK 17.
+ *
+ * Ranges whose costs could overflow the key, such as tables of long values, are scanned with the
+ * scalar loop. This class is only compiled by the vector Maven profile and needs the
+ * jdk.incubator.vector module at run time, the solver falls back to the scalar loop when either is
+ * missing.
+ */
+public final class VectorRowReduction implements ParallelDynamicSolver.Reduction {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private static final ParallelDynamicSolver.Reduction SCALAR = new ParallelDynamicSolver.ScalarReduction();
+
+    @Override
+    public void scan(CostTable costTable, long[] minCost, int firstRow, int lastRow, int from, int to,
+                     long[] cost, int[] posts) {
+        int bits = 32 - Integer.numberOfLeadingZeros(lastRow);
+        long maxBase = 0;
+        for (int i = firstRow; i < lastRow; i++) {
+            maxBase = Math.max(maxBase, minCost[i]);
+        }
+
+        // Every candidate must stay below the largest key, which marks columns with no candidate yet.
+        if (maxBase >= (Long.MAX_VALUE >> bits) - costTable.width().maxValue()) {
+            SCALAR.scan(costTable, minCost, firstRow, lastRow, from, to, cost, posts);
+            return;
+        }
+
+        int width = to - from;
+        long[] row = new long[width];
+        long[] keys = new long[width];
+        Arrays.fill(keys, Long.MAX_VALUE);
+        int bound = SPECIES.loopBound(width);
+
+        for (int i = firstRow; i < lastRow; i++) {
+            costTable.readRow(i, from, to, row, 0);
+            long base = (minCost[i] << bits) | i;
+            LongVector bases = LongVector.broadcast(SPECIES, base);
+
+            int k = 0;
+            for (; k < bound; k += SPECIES.length()) {
+                LongVector.fromArray(SPECIES, row, k)
+                        .lanewise(VectorOperators.LSHL, bits)
+                        .add(bases)
+                        .min(LongVector.fromArray(SPECIES, keys, k))
+                        .intoArray(keys, k);
+            }
+
+            // The columns left over after the last full vector.
+            for (; k < width; k++) {
+                keys[k] = Math.min(keys[k], (row[k] << bits) + base);
+            }
+        }
+
+        long postMask = (1L << bits) - 1;
+        for (int k = 0; k < width; k++) {
+            boolean found = keys[k] != Long.MAX_VALUE;
+            cost[k] = found ? keys[k] >>> bits : Long.MAX_VALUE;
+            posts[k] = found ? (int) (keys[k] & postMask) : 0;
+        }
+    }
+}